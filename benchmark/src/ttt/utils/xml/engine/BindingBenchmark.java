@@ -0,0 +1,315 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.engine;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import ttt.utils.engines.enums.FieldType;
+import ttt.utils.engines.enums.MethodType;
+import ttt.utils.engines.interfaces.EngineField;
+import ttt.utils.engines.interfaces.EngineMethod;
+import ttt.utils.engines.utils.EngineUtils;
+import ttt.utils.xml.document.XMLElement;
+import ttt.utils.xml.document.XMLTag;
+import ttt.utils.xml.engine.annotations.Element;
+import ttt.utils.xml.engine.annotations.Tag;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+import ttt.utils.xml.engine.interfaces.IXMLTag;
+
+/**
+ * Confronta i tempi di {@link ElementBinding} (accessori {@link java.lang.invoke.MethodHandle},
+ * senza boxing dei primitivi) con il percorso tramite reflection che ha
+ * sostituito: {@link Method#invoke(Object, Object...)},
+ * {@link Field#set(Object, Object)} / {@link Field#get(Object)} e
+ * {@link EngineUtils#convertStringToPrimitive(String, Class)}.<br>
+ * Il percorso tramite reflection viene misurato in due varianti:
+ * <ul>
+ * <li><b>reflection</b>: i metodi e le variabili annotate vengono cercati ad
+ * ogni elemento, come faceva {@link XMLEngine} prima della cache;</li>
+ * <li><b>reflection (cache)</b>: i metodi e le variabili vengono cercati una
+ * sola volta, perciò si misura solo il costo delle chiamate.</li>
+ * </ul>
+ * Per ogni variante vengono misurate la lettura (tags &rarr; nuovo elemento,
+ * come in {@link XMLEngine#morph(ttt.utils.xml.document.XMLDocument)}) e la
+ * scrittura (elemento &rarr; tags, come in
+ * {@link XMLWriteSupportEngine#applyChanges()}) e viene stampato il tempo
+ * migliore per elemento su più ripetizioni.<br>
+ * Il benchmark non ha dipendenze oltre alla libreria e non fa parte della
+ * libreria stessa. La classe {@link Sample} non deve essere compilata con
+ * {@code XMLBinderProcessor}, altrimenti {@link ElementBinding} userebbe il
+ * binder generato:
+ * <pre>
+ * javac -proc:none -cp &lt;libreria&gt; -d out benchmark/src/ttt/utils/xml/engine/BindingBenchmark.java
+ * java -cp &lt;libreria&gt;:out ttt.utils.xml.engine.BindingBenchmark [elementi]
+ * </pre>
+ *
+ * @author TTT
+ */
+public final class BindingBenchmark {
+
+    private static final int DEFAULT_ELEMENTS = 200_000;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 10;
+
+    private static long sink;
+
+    private BindingBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ELEMENTS;
+        XMLElement source = new XMLElement("sample");
+        addTag(source, "count", "42");
+        addTag(source, "size", "1234567890123");
+        addTag(source, "ratio", "0.75");
+        addTag(source, "enabled", "true");
+        addTag(source, "level", "7");
+        addTag(source, "label", "benchmark");
+
+        ElementBinding binding = ElementBinding.of(Sample.class);
+        ReflectivePath cached = new ReflectivePath(Sample.class);
+        Sample target = new Sample();
+        binding.bind(source, target);
+        binding.applyChanges(target);
+
+        Sample reflected = new Sample();
+        cached.bind(source, reflected);
+        cached.applyChanges(reflected);
+        for (IXMLTag tag : source.getTags()) {
+            if (!tag.getValue().equals(target.getTag(tag.getName()).getValue())
+                    || !tag.getValue().equals(reflected.getTag(tag.getName()).getValue())) {
+                throw new IllegalStateException("Different value for tag " + tag.getName());
+            }
+        }
+
+        System.out.printf("%-20s %14s %14s%n", "", "read ns/elem", "write ns/elem");
+        print("MethodHandle", measure(elements, () -> {
+            Sample to = new Sample();
+            binding.bind(source, to);
+            sink += to.count + to.getLevel();
+        }), measure(elements, () -> {
+            binding.applyChanges(target);
+            sink += target.getTag("count").getValue().length();
+        }));
+        print("reflection (cache)", measure(elements, () -> {
+            Sample to = new Sample();
+            cached.bind(source, to);
+            sink += to.count + to.getLevel();
+        }), measure(elements, () -> {
+            cached.applyChanges(target);
+            sink += target.getTag("count").getValue().length();
+        }));
+        print("reflection", measure(elements, () -> {
+            Sample to = new Sample();
+            new ReflectivePath(Sample.class).bind(source, to);
+            sink += to.count + to.getLevel();
+        }), measure(elements, () -> {
+            new ReflectivePath(Sample.class).applyChanges(target);
+            sink += target.getTag("count").getValue().length();
+        }));
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void addTag(IXMLElement element, String name, String value) {
+        XMLTag tag = new XMLTag(name);
+        tag.setValue(value);
+        element.addTag(tag);
+    }
+
+    private static void print(String name, double read, double write) {
+        System.out.printf("%-20s %14.1f %14.1f%n", name, read, write);
+    }
+
+    /**
+     * Esegue l'operazione per il numero di elementi richiesto e ritorna il
+     * tempo migliore per elemento, in nanosecondi.
+     */
+    private static double measure(int elements, Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            repeat(elements, operation);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            System.gc();
+            long start = System.nanoTime();
+            repeat(elements, operation);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / elements;
+    }
+
+    private static void repeat(int elements, Runnable operation) {
+        for (int i = 0; i < elements; i++) {
+            operation.run();
+        }
+    }
+
+    /**
+     * Elemento con tags primitive e {@link String}, collegate sia tramite
+     * variabili che tramite metodi.
+     */
+    @Element(Name = "sample")
+    public static class Sample extends XMLElement {
+
+        @EngineField(FieldType = FieldType.READ_AND_WRITE)
+        @Tag(Name = "count", ValueType = int.class)
+        public int count;
+        @EngineField(FieldType = FieldType.READ_AND_WRITE)
+        @Tag(Name = "size", ValueType = long.class)
+        public long size;
+        @EngineField(FieldType = FieldType.READ_AND_WRITE)
+        @Tag(Name = "ratio", ValueType = double.class)
+        public double ratio;
+        private boolean enabled;
+        private int level;
+        private String label;
+
+        public Sample() {
+            super("sample");
+        }
+
+        @EngineMethod(MethodType = MethodType.SET)
+        @Tag(Name = "enabled", ValueType = boolean.class)
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        @EngineMethod(MethodType = MethodType.GET)
+        @Tag(Name = "enabled", ValueType = boolean.class)
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @EngineMethod(MethodType = MethodType.SET)
+        @Tag(Name = "level", ValueType = int.class)
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        @EngineMethod(MethodType = MethodType.GET)
+        @Tag(Name = "level", ValueType = int.class)
+        public int getLevel() {
+            return level;
+        }
+
+        @EngineMethod(MethodType = MethodType.SET)
+        @Tag(Name = "label")
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        @EngineMethod(MethodType = MethodType.GET)
+        @Tag(Name = "label")
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Il collegamento tramite reflection utilizzato prima di
+     * {@link ElementBinding}: stessa ricerca dei membri annotati e stesse
+     * conversioni di {@code XMLEngine.transfer} e
+     * {@code XMLWriteSupportEngine.transferChanges}, con il nome della tag e
+     * il tipo di ogni membro salvati una sola volta.
+     */
+    private static final class ReflectivePath {
+
+        private final ArrayList<Member> setters = new ArrayList<>();
+        private final ArrayList<Member> getters = new ArrayList<>();
+
+        private ReflectivePath(Class<?> c) {
+            for (Method m : c.getDeclaredMethods()) {
+                EngineMethod meta = m.getAnnotation(EngineMethod.class);
+                Tag tag_annot = m.getAnnotation(Tag.class);
+                if (meta != null && tag_annot != null) {
+                    if (meta.MethodType() == MethodType.SET && m.getParameterCount() == 1
+                            && m.getParameterTypes()[0].equals(tag_annot.ValueType())) {
+                        setters.add(new Member(tag_annot.Name(), m.getParameterTypes()[0], m, null));
+                    } else if (meta.MethodType() == MethodType.GET && m.getParameterCount() == 0) {
+                        getters.add(new Member(tag_annot.Name(), m.getReturnType(), m, null));
+                    }
+                }
+            }
+            for (Field f : c.getDeclaredFields()) {
+                f.setAccessible(true);
+                EngineField meta = f.getAnnotation(EngineField.class);
+                Tag tag_annot = f.getAnnotation(Tag.class);
+                if (meta != null && tag_annot != null) {
+                    if (meta.FieldType() == FieldType.READ_AND_WRITE || meta.FieldType() == FieldType.READ) {
+                        setters.add(new Member(tag_annot.Name(), f.getType(), null, f));
+                    }
+                    if (meta.FieldType() == FieldType.READ_AND_WRITE || meta.FieldType() == FieldType.WRITE) {
+                        getters.add(new Member(tag_annot.Name(), f.getType(), null, f));
+                    }
+                }
+            }
+        }
+
+        private void bind(IXMLElement from, IXMLElement to) {
+            try {
+                for (Member setter : setters) {
+                    IXMLTag effective_tag = from.getTag(setter.name);
+                    Object value;
+                    if (setter.type == String.class) {
+                        value = effective_tag != null ? effective_tag.getValue() : null;
+                    } else {
+                        value = effective_tag != null ? EngineUtils.convertStringToPrimitive(effective_tag.getValue(), setter.type) : null;
+                    }
+                    if (setter.method != null) {
+                        setter.method.invoke(to, value);
+                    } else {
+                        setter.field.set(to, value);
+                    }
+                }
+            } catch (IllegalAccessException | InvocationTargetException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        private void applyChanges(IXMLElement exec) {
+            try {
+                for (Member getter : getters) {
+                    IXMLTag effective_tag = exec.getTag(getter.name);
+                    if (effective_tag == null) {
+                        effective_tag = new XMLTag(getter.name);
+                        exec.addTag(effective_tag);
+                    }
+                    Object res = getter.method != null ? getter.method.invoke(exec) : getter.field.get(exec);
+                    effective_tag.setValue(res != null ? res.toString() : "");
+                }
+            } catch (IllegalAccessException | InvocationTargetException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private static final class Member {
+
+        private final String name;
+        private final Class<?> type;
+        private final Method method;
+        private final Field field;
+
+        private Member(String name, Class<?> type, Method method, Field field) {
+            this.name = name;
+            this.type = type;
+            this.method = method;
+            this.field = field;
+        }
+    }
+}
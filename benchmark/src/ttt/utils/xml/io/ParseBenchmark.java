@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import ttt.utils.xml.document.XMLDocument;
+
+/**
+ * Misura il tempo di lettura di {@link XMLReader#readDocument()} su documenti
+ * sintetici <i>profondi</i> (ogni elemento contiene il successivo) e
+ * <i>larghi</i> (tutti gli elementi sono figli della root), di dimensione
+ * crescente.<br>
+ * Il JIT viene prima riscaldato sul documento più grande, poi per ogni
+ * documento vengono stampati il tempo migliore su più ripetizioni (ognuna
+ * preceduta da una garbage collection), il tempo per elemento e il rapporto
+ * con la dimensione precedente: se la lettura è lineare il tempo per elemento
+ * resta costante e il rapporto è circa uguale al rapporto tra le
+ * dimensioni.<br>
+ * Il benchmark non ha dipendenze oltre alla libreria e non fa parte della
+ * libreria stessa:
+ * <pre>
+ * javac -cp &lt;libreria&gt; -d out benchmark/src/ttt/utils/xml/io/ParseBenchmark.java
+ * java -cp &lt;libreria&gt;:out ttt.utils.xml.io.ParseBenchmark [elementi...]
+ * </pre>
+ *
+ * @author TTT
+ */
+public final class ParseBenchmark {
+
+    private static final int[] DEFAULT_SIZES = {25_000, 50_000, 100_000, 200_000, 400_000};
+    private static final int WARMUP = 10;
+    private static final int ROUNDS = 10;
+
+    private static int sink;
+
+    private ParseBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        run("deep", sizes, true);
+        run("wide", sizes, false);
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void run(String shape, int[] sizes, boolean deep) throws IOException {
+        System.out.printf("%-6s %10s %12s %12s %8s%n", shape, "elements", "best ms", "ns/element", "ratio");
+        byte[] largest = deep ? deep(sizes[sizes.length - 1]) : wide(sizes[sizes.length - 1]);
+        for (int i = 0; i < WARMUP; i++) {
+            parse(largest);
+        }
+        long previous = 0;
+        for (int size : sizes) {
+            byte[] document = deep ? deep(size) : wide(size);
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < ROUNDS; i++) {
+                System.gc();
+                long start = System.nanoTime();
+                parse(document);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%-6s %10d %12.2f %12.1f %8s%n", "", size, best / 1e6, (double) best / size,
+                    previous > 0 ? String.format("%.2f", (double) best / previous) : "-");
+            previous = best;
+        }
+    }
+
+    private static void parse(byte[] document) throws IOException {
+        XMLDocument read = new XMLReader(new ByteArrayInputStream(document)).readDocument();
+        sink += read.getElements().size();
+    }
+
+    /**
+     * Crea un documento in cui ogni elemento (con una tag e un valore)
+     * contiene il successivo.
+     */
+    private static byte[] deep(int size) {
+        StringBuilder sb = new StringBuilder(size * 24);
+        for (int i = 0; i < size; i++) {
+            sb.append("<e id=\"").append(i).append("\">v");
+        }
+        for (int i = 0; i < size; i++) {
+            sb.append("</e>");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Crea un documento in cui tutti gli elementi (con una tag e un valore)
+     * sono figli della root.
+     */
+    private static byte[] wide(int size) {
+        StringBuilder sb = new StringBuilder(size * 24);
+        sb.append("<r>");
+        for (int i = 1; i < size; i++) {
+            sb.append("<e id=\"").append(i).append("\">v</e>");
+        }
+        sb.append("</r>");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
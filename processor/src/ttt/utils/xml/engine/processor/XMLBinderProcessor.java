@@ -0,0 +1,428 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.engine.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import ttt.utils.engines.enums.FieldType;
+import ttt.utils.engines.enums.MethodType;
+import ttt.utils.engines.interfaces.EngineField;
+import ttt.utils.engines.interfaces.EngineMethod;
+import ttt.utils.xml.engine.annotations.Element;
+import ttt.utils.xml.engine.annotations.Tag;
+import ttt.utils.xml.engine.interfaces.IXMLBinder;
+
+/**
+ * Processore di annotazioni che genera, per ogni classe annotata con
+ * {@link Element}, una classe {@link IXMLBinder}
+ * nello stesso package, di nome {@code <Classe>_XMLBinder} (per le classi
+ * annidate i nomi delle classi esterne sono separati da {@code _}).<br>
+ * Il binder generato replica quello che {@link ttt.utils.xml.engine.XMLEngine}
+ * esegue tramite reflection: imposta il valore e le tags (metodi
+ * {@link MethodType#SET} e variabili {@link FieldType#READ}), esegue i metodi
+ * {@link MethodType#CALC} e aggiorna le tags prima della scrittura (metodi
+ * {@link MethodType#GET} e variabili {@link FieldType#WRITE}).<br>
+ * Le classi che non possono essere gestite senza reflection (classi astratte
+ * o private, senza costruttore pubblico senza parametri, con membri collegati
+ * privati) non generano nessun binder e l'engine continua ad usare la
+ * reflection.<br>
+ * Il processore si trova in un source set separato dalla libreria
+ * ({@code processor/src}), perché deve essere compilato prima delle classi
+ * che ne fanno uso: la libreria va compilata con {@code -proc:none} e il
+ * processore va aggiunto al {@code -processorpath} dei progetti che la
+ * utilizzano.
+ *
+ * @author TTT
+ */
+@SupportedAnnotationTypes("ttt.utils.xml.engine.annotations.Element")
+public class XMLBinderProcessor extends AbstractProcessor {
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (javax.lang.model.element.Element e : round.getElementsAnnotatedWith(Element.class)) {
+            if (e.getKind() == ElementKind.CLASS) {
+                TypeElement type = (TypeElement) e;
+                if (generated.add(type.getQualifiedName().toString())) {
+                    BinderModel model = createModel(type);
+                    if (model != null) {
+                        write(model);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ritorna il nome della classe binder (senza package) di una classe
+     * elemento.
+     */
+    private static String binderName(TypeElement type) {
+        StringBuilder sb = new StringBuilder(type.getSimpleName());
+        javax.lang.model.element.Element enclosing = type.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            sb.insert(0, '_').insert(0, enclosing.getSimpleName());
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return sb.append(IXMLBinder.BINDER_SUFFIX).toString();
+    }
+
+    private void skip(TypeElement type, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "No XML binder generated for " + type.getQualifiedName() + ": " + reason, type);
+    }
+
+    private BinderModel createModel(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            skip(type, "abstract class");
+            return null;
+        }
+        javax.lang.model.element.Element current = type;
+        while (current instanceof TypeElement) {
+            if (current.getModifiers().contains(Modifier.PRIVATE)) {
+                skip(type, "private class");
+                return null;
+            }
+            if (current.getEnclosingElement() instanceof TypeElement && !current.getModifiers().contains(Modifier.STATIC)) {
+                skip(type, "inner class");
+                return null;
+            }
+            current = current.getEnclosingElement();
+        }
+        Element annotation = type.getAnnotation(Element.class);
+        BinderModel model = new BinderModel(type, annotation);
+        boolean has_constructor = false;
+        for (javax.lang.model.element.Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR) {
+                ExecutableElement constr = (ExecutableElement) member;
+                if (constr.getParameters().isEmpty() && constr.getModifiers().contains(Modifier.PUBLIC)) {
+                    has_constructor = true;
+                }
+            } else if (member.getKind() == ElementKind.METHOD) {
+                if (!addMethod(model, (ExecutableElement) member)) {
+                    skip(type, "private member " + member.getSimpleName());
+                    return null;
+                }
+            }
+        }
+        if (!has_constructor) {
+            skip(type, "no public constructor without parameters");
+            return null;
+        }
+        for (javax.lang.model.element.Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.FIELD) {
+                if (!addField(model, (VariableElement) member)) {
+                    skip(type, "private member " + member.getSimpleName());
+                    return null;
+                }
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Aggiunge un metodo al modello.
+     *
+     * @return {@code false} se il metodo è collegato ma non accessibile dal
+     * binder.
+     */
+    private boolean addMethod(BinderModel model, ExecutableElement m) {
+        EngineMethod meta = m.getAnnotation(EngineMethod.class);
+        if (meta == null) {
+            return true;
+        }
+        Tag tag_annot = m.getAnnotation(Tag.class);
+        String target = model.qualifier(m, "to") + m.getSimpleName();
+        if (meta.MethodType() == MethodType.SET) {
+            if (model.annotation.CanHaveTags() && tag_annot != null && m.getParameters().size() == 1) {
+                TypeMirror param1 = m.getParameters().get(0).asType();
+                String conversion = conversion(param1);
+                if (conversion != null && processingEnv.getTypeUtils().isSameType(param1, valueType(tag_annot))) {
+                    if (m.getModifiers().contains(Modifier.PRIVATE)) {
+                        return false;
+                    }
+                    model.setters.add(new String[]{tag_annot.Name(), setStatement(param1, target + "(%s);", conversion)});
+                }
+            }
+        } else if (meta.MethodType() == MethodType.GET) {
+            if (model.annotation.CanHaveTags() && tag_annot != null && m.getParameters().isEmpty() && m.getReturnType().getKind() != TypeKind.VOID) {
+                if (m.getModifiers().contains(Modifier.PRIVATE)) {
+                    return false;
+                }
+                model.getters.add(new String[]{tag_annot.Name(), getExpression(m.getReturnType(), model.qualifier(m, "exec") + m.getSimpleName() + "()")});
+            }
+        } else if (meta.MethodType() == MethodType.CALC && m.getParameters().isEmpty()) {
+            if (m.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            model.calcs.add(target + "();");
+        }
+        return true;
+    }
+
+    /**
+     * Aggiunge una variabile al modello.
+     *
+     * @return {@code false} se la variabile è collegata ma non accessibile dal
+     * binder.
+     */
+    private boolean addField(BinderModel model, VariableElement f) {
+        EngineField meta = f.getAnnotation(EngineField.class);
+        Tag tag_annot = f.getAnnotation(Tag.class);
+        if (meta == null || tag_annot == null || !model.annotation.CanHaveTags()) {
+            return true;
+        }
+        if (f.getModifiers().contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        String conversion = conversion(f.asType());
+        if ((meta.FieldType() == FieldType.READ_AND_WRITE || meta.FieldType() == FieldType.READ)
+                && conversion != null && !f.getModifiers().contains(Modifier.FINAL)) {
+            model.setters.add(new String[]{tag_annot.Name(), setStatement(f.asType(), model.qualifier(f, "to") + f.getSimpleName() + " = %s;", conversion)});
+        }
+        if (meta.FieldType() == FieldType.READ_AND_WRITE || meta.FieldType() == FieldType.WRITE) {
+            model.getters.add(new String[]{tag_annot.Name(), getExpression(f.asType(), model.qualifier(f, "exec") + f.getSimpleName())});
+        }
+        return true;
+    }
+
+    private TypeMirror valueType(Tag tag) {
+        try {
+            tag.ValueType();
+        } catch (MirroredTypeException ex) {
+            return ex.getTypeMirror();
+        }
+        return processingEnv.getElementUtils().getTypeElement(String.class.getCanonicalName()).asType();
+    }
+
+    /**
+     * Ritorna l'espressione che converte la stringa {@code v} nel tipo
+     * indicato, oppure {@code null} se il tipo non è supportato.
+     */
+    private static String conversion(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return "Integer.parseInt(v)";
+            case LONG:
+                return "Long.parseLong(v)";
+            case DOUBLE:
+                return "Double.parseDouble(v)";
+            case FLOAT:
+                return "Float.parseFloat(v)";
+            case BOOLEAN:
+                return "Boolean.parseBoolean(v)";
+            case BYTE:
+                return "Byte.parseByte(v)";
+            case CHAR:
+                return "v.charAt(0)";
+            case SHORT:
+                return "Short.parseShort(v)";
+            case DECLARED:
+                switch (type.toString()) {
+                    case "java.lang.String":
+                        return "v";
+                    case "java.lang.Integer":
+                        return "Integer.valueOf(v)";
+                    case "java.lang.Long":
+                        return "Long.valueOf(v)";
+                    case "java.lang.Double":
+                        return "Double.valueOf(v)";
+                    case "java.lang.Float":
+                        return "Float.valueOf(v)";
+                    case "java.lang.Boolean":
+                        return "Boolean.valueOf(v)";
+                    case "java.lang.Byte":
+                        return "Byte.valueOf(v)";
+                    case "java.lang.Character":
+                        return "Character.valueOf(v.charAt(0))";
+                    case "java.lang.Short":
+                        return "Short.valueOf(v)";
+                    default:
+                        return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Crea l'istruzione che imposta il valore {@code v} di una tag: le tags
+     * assenti lasciano invariati i tipi primitivi e impostano a {@code null}
+     * gli altri, come l'engine basato su reflection.
+     */
+    private static String setStatement(TypeMirror type, String pattern, String conversion) {
+        if (type.getKind().isPrimitive()) {
+            return "if (v != null) {\n                " + String.format(pattern, conversion) + "\n            }";
+        } else if (conversion.equals("v")) {
+            return String.format(pattern, "v");
+        }
+        return String.format(pattern, "v != null ? " + conversion + " : null");
+    }
+
+    private static String getExpression(TypeMirror type, String access) {
+        if (type.getKind().isPrimitive()) {
+            return "String.valueOf(" + access + ")";
+        }
+        return "java.util.Objects.toString(" + access + ", \"\")";
+    }
+
+    private void write(BinderModel model) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(model.type);
+        String binder = binderName(model.type);
+        String qualified = pkg.isUnnamed() ? binder : pkg.getQualifiedName() + "." + binder;
+        String element = model.type.getQualifiedName().toString();
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualified, model.type).openWriter())) {
+            if (!pkg.isUnnamed()) {
+                out.println("package " + pkg.getQualifiedName() + ";");
+                out.println();
+            }
+            out.println("import java.util.logging.Level;");
+            out.println("import java.util.logging.Logger;");
+            out.println("import ttt.utils.xml.document.XMLTag;");
+            out.println("import ttt.utils.xml.engine.XMLEngine;");
+            out.println("import ttt.utils.xml.engine.interfaces.IXMLBinder;");
+            out.println("import ttt.utils.xml.engine.interfaces.IXMLElement;");
+            out.println("import ttt.utils.xml.engine.interfaces.IXMLTag;");
+            out.println();
+            out.println("/**");
+            out.println(" * Binder di {@link " + element + "} generato da");
+            out.println(" * {@link " + XMLBinderProcessor.class.getName() + "}.");
+            out.println(" */");
+            out.println("public final class " + binder + " implements IXMLBinder<" + element + "> {");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + element + " newInstance() {");
+            out.println("        return new " + element + "();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void bind(IXMLElement from, " + element + " to) {");
+            if (model.annotation.CanHaveValue()) {
+                out.println("        to.setValue(from.getValue());");
+            }
+            if (!model.setters.isEmpty()) {
+                out.println("        String v;");
+            }
+            for (String[] setter : model.setters) {
+                out.println("        v = value(from, " + constant(setter[0]) + ");");
+                out.println("        try {");
+                out.println("            " + setter[1]);
+                out.println("        } catch (Exception ex) {");
+                out.println("            log(ex);");
+                out.println("        }");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void calc(" + element + " to) {");
+            for (String calc : model.calcs) {
+                out.println("        try {");
+                out.println("            " + calc);
+                out.println("        } catch (Exception ex) {");
+                out.println("            log(ex);");
+                out.println("        }");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void applyChanges(" + element + " exec) {");
+            for (String[] getter : model.getters) {
+                out.println("        try {");
+                out.println("            tag(exec, " + constant(getter[0]) + ").setValue(" + getter[1] + ");");
+                out.println("        } catch (Exception ex) {");
+                out.println("            log(ex);");
+                out.println("        }");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    private static String value(IXMLElement from, String name) {");
+            out.println("        IXMLTag tag = from.getTag(name);");
+            out.println("        return tag != null ? tag.getValue() : null;");
+            out.println("    }");
+            out.println();
+            out.println("    private static IXMLTag tag(IXMLElement exec, String name) {");
+            out.println("        IXMLTag tag = exec.getTag(name);");
+            out.println("        if (tag == null) {");
+            out.println("            tag = new XMLTag(name);");
+            out.println("            exec.addTag(tag);");
+            out.println("        }");
+            out.println("        return tag;");
+            out.println("    }");
+            out.println();
+            out.println("    private static void log(Exception ex) {");
+            out.println("        Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + qualified + ": " + ex.getMessage(), model.type);
+        }
+    }
+
+    private String constant(String value) {
+        return processingEnv.getElementUtils().getConstantExpression(value);
+    }
+
+    /**
+     * Le informazioni raccolte da una classe elemento per generarne il
+     * binder.
+     */
+    private static final class BinderModel {
+
+        private final TypeElement type;
+        private final Element annotation;
+        private final ArrayList<String[]> setters = new ArrayList<>();
+        private final ArrayList<String[]> getters = new ArrayList<>();
+        private final ArrayList<String> calcs = new ArrayList<>();
+
+        private BinderModel(TypeElement type, Element annotation) {
+            this.type = type;
+            this.annotation = annotation;
+        }
+
+        /**
+         * Ritorna il prefisso con cui accedere ad un membro: la classe per i
+         * membri statici, la variabile indicata per quelli d'istanza.
+         */
+        private String qualifier(javax.lang.model.element.Element member, String instance) {
+            return member.getModifiers().contains(Modifier.STATIC) ? type.getQualifiedName() + "." : instance + ".";
+        }
+    }
+}
@@ -48,4 +48,11 @@ public class ProjectSettings {
      * Altrimenti partiranno da 1 a N.
      */
     public static boolean XML_STRUCTURE_ZERO_ALLOWED = true;
+    /**
+     * Numero minimo di sotto-elementi oltre il quale un
+     * {@link ttt.utils.xml.document.XMLElement} crea un indice dei
+     * sotto-elementi per nome, utilizzato dalle ricerche per nome. Sotto
+     * questa soglia le ricerche scorrono direttamente la lista.
+     */
+    public static int XML_ELEMENT_INDEX_THRESHOLD = 16;
 }
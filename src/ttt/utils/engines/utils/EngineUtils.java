@@ -89,7 +89,7 @@ public final class EngineUtils {
             } else if (type == Boolean.class) {
                 return Boolean.parseBoolean(value);
             } else if (type == Byte.class) {
-                return Byte.class;
+                return Byte.parseByte(value);
             } else if (type == Character.class) {
                 return value.charAt(0);
             } else if (type == Short.class) {
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.document;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import ttt.utils.xml.engine.interfaces.IXMLComment;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+import ttt.utils.xml.engine.interfaces.IXMLTag;
+
+/**
+ * Elemento XML di sola lettura con una rappresentazione compatta in memoria:
+ * gli attributi sono salvati in due array paralleli (nomi e valori), i nomi
+ * sono internati, i sotto-elementi e i commenti sono salvati in array e gli
+ * elementi senza figli o commenti condividono lo stesso array vuoto. Le liste
+ * ritornate da {@link #getElements()} e {@link #getComments()} sono viste non
+ * modificabili degli array, create solo quando vengono richieste.<br>
+ * Viene creato da {@link ttt.utils.xml.io.XMLReader} quando è abilitata la
+ * lettura compatta. Tutti i metodi che modificano l'elemento lanciano
+ * {@link UnsupportedOperationException}; le tag ritornate sono copie, perciò
+ * modificarle non ha effetto sull'elemento.
+ *
+ * @author TTT
+ */
+public class XMLCompactElement implements IXMLElement {
+
+    private static final String[] NO_TAGS = new String[0];
+    private static final IXMLElement[] NO_ELEMENTS = new IXMLElement[0];
+    private static final IXMLComment[] NO_COMMENTS = new IXMLComment[0];
+
+    private final String name;
+    private final String value;
+    private final String[] tag_names;
+    private final String[] tag_values;
+    private final IXMLElement[] sub_elements;
+    private final IXMLComment[] comments;
+
+    /**
+     * Crea un nuovo elemento compatto.
+     *
+     * @param name Il nome dell'elemento.
+     * @param value Il valore dell'elemento (può essere {@code null}).
+     * @param tag_names I nomi degli attributi (può essere {@code null}).
+     * @param tag_values I valori degli attributi, nello stesso ordine dei
+     * nomi.
+     * @param sub_elements I sotto-elementi (può essere {@code null}). L'array
+     * viene utilizzato direttamente, senza essere copiato.
+     * @param comments I commenti (può essere {@code null}). L'array viene
+     * utilizzato direttamente, senza essere copiato.
+     */
+    public XMLCompactElement(String name, String value, String[] tag_names, String[] tag_values, IXMLElement[] sub_elements, IXMLComment[] comments) {
+        this.name = name.intern();
+        this.value = value;
+        if (tag_names == null || tag_names.length == 0) {
+            this.tag_names = NO_TAGS;
+            this.tag_values = NO_TAGS;
+        } else {
+            if (tag_values == null || tag_values.length != tag_names.length) {
+                throw new IllegalArgumentException("Tag names and values must have the same length");
+            }
+            this.tag_names = new String[tag_names.length];
+            for (int i = 0; i < tag_names.length; i++) {
+                this.tag_names[i] = tag_names[i].intern();
+            }
+            this.tag_values = tag_values;
+        }
+        this.sub_elements = sub_elements == null || sub_elements.length == 0 ? NO_ELEMENTS : sub_elements;
+        this.comments = comments == null || comments.length == 0 ? NO_COMMENTS : comments;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public void setValue(String value) {
+        throw new UnsupportedOperationException("Read-only element");
+    }
+
+    @Override
+    public boolean hasSubElements() {
+        return sub_elements.length > 0;
+    }
+
+    @Override
+    public void addSubElement(IXMLElement element) {
+        throw new UnsupportedOperationException("Read-only element");
+    }
+
+    @Override
+    public void removeSubElement(IXMLElement element) {
+        throw new UnsupportedOperationException("Read-only element");
+    }
+
+    @Override
+    public boolean hasElement(IXMLElement element) {
+        for (IXMLElement sub_element : sub_elements) {
+            if (sub_element == element || sub_element.equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void addTag(IXMLTag tag) {
+        throw new UnsupportedOperationException("Read-only element");
+    }
+
+    @Override
+    public void removeTag(IXMLTag tag) {
+        throw new UnsupportedOperationException("Read-only element");
+    }
+
+    @Override
+    public boolean hasTag(String name) {
+        return indexOfTag(name) >= 0;
+    }
+
+    @Override
+    public IXMLTag getTag(String name) {
+        int i = indexOfTag(name);
+        return i >= 0 ? createTag(i) : null;
+    }
+
+    private int indexOfTag(String name) {
+        for (int i = 0; i < tag_names.length; i++) {
+            if (tag_names[i] == name || tag_names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private IXMLTag createTag(int i) {
+        XMLTag tag = new XMLTag(tag_names[i]);
+        tag.setValue(tag_values[i]);
+        return tag;
+    }
+
+    @Override
+    public List<IXMLTag> getTags() {
+        if (tag_names.length == 0) {
+            return Collections.emptyList();
+        }
+        ArrayList<IXMLTag> tgs = new ArrayList<>(tag_names.length);
+        for (int i = 0; i < tag_names.length; i++) {
+            tgs.add(createTag(i));
+        }
+        return Collections.unmodifiableList(tgs);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * Come per {@link #getTags()}, le tags passate all'azione sono copie.
+     */
+    @Override
+    public void forEachTag(Consumer<? super IXMLTag> action) {
+        for (int i = 0; i < tag_names.length; i++) {
+            action.accept(createTag(i));
+        }
+    }
+
+    @Override
+    public List<IXMLElement> getElements() {
+        return sub_elements.length == 0 ? Collections.emptyList() : new ArrayView<>(sub_elements);
+    }
+
+    @Override
+    public void forEachElement(Consumer<? super IXMLElement> action) {
+        for (IXMLElement element : sub_elements) {
+            action.accept(element);
+        }
+    }
+
+    @Override
+    public IXMLElement getFirstElement(String name) {
+        for (IXMLElement element : sub_elements) {
+            if (element.getName().equals(name)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<IXMLElement> getElements(String name) {
+        ArrayList<IXMLElement> found = null;
+        for (IXMLElement element : sub_elements) {
+            if (element.getName().equals(name)) {
+                if (found == null) {
+                    found = new ArrayList<>();
+                }
+                found.add(element);
+            }
+        }
+        return found != null ? Collections.unmodifiableList(found) : Collections.emptyList();
+    }
+
+    /**
+     * Un elemento compatto è creato già completo, perciò è sempre chiuso.
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isClosed() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public IXMLElement getLast() {
+        return null;
+    }
+
+    @Override
+    public List<IXMLComment> getComments() {
+        return comments.length == 0 ? Collections.emptyList() : new ArrayView<>(comments);
+    }
+
+    @Override
+    public void addComment(IXMLComment comment) {
+        throw new UnsupportedOperationException("Read-only element");
+    }
+
+    /**
+     * Vista non modificabile di un array.
+     */
+    private static final class ArrayView<E> extends AbstractList<E> implements RandomAccess {
+
+        private final E[] array;
+
+        private ArrayView(E[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public E get(int index) {
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return array.length;
+        }
+    }
+}
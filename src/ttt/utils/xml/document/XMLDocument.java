@@ -16,10 +16,7 @@
 package ttt.utils.xml.document;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 import javax.xml.stream.events.XMLEvent;
 import ttt.utils.xml.engine.interfaces.IXMLElement;
 
@@ -34,7 +31,6 @@ import ttt.utils.xml.engine.interfaces.IXMLElement;
  */
 public class XMLDocument extends XMLElement {
 
-    private final ArrayList<IXMLElement> elements = new ArrayList<>();
     private final File file;
 
     /**
@@ -63,8 +59,8 @@ public class XMLDocument extends XMLElement {
      * @return Il primo elemento presente nel documento.
      */
     public IXMLElement getRoot() {
-        Optional<IXMLElement> root = super.getElements().stream().findFirst();
-        return root.orElse(null);
+        List<IXMLElement> elements = getElements();
+        return elements.isEmpty() ? null : elements.get(0);
     }
 
     /**
@@ -74,8 +70,6 @@ public class XMLDocument extends XMLElement {
      */
     @Override
     public List<IXMLElement> getElements() {
-        elements.clear();
-        elements.addAll(super.getElements());
-        return Collections.unmodifiableList(elements);
+        return super.getElements();
     }
 }
@@ -19,6 +19,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Consumer;
+import ttt.utils.ProjectSettings;
 import ttt.utils.xml.engine.interfaces.IXMLComment;
 import ttt.utils.xml.engine.interfaces.IXMLElement;
 import ttt.utils.xml.engine.interfaces.IXMLTag;
@@ -40,6 +42,10 @@ public class XMLElement implements IXMLElement {
     private final HashMap<String, IXMLTag> tags = new HashMap<>();
     private final ArrayList<IXMLElement> sub_elements = new ArrayList<>();
     private final ArrayList<IXMLComment> comments = new ArrayList<>();
+    private final List<IXMLElement> sub_elements_view = Collections.unmodifiableList(sub_elements);
+    private final List<IXMLComment> comments_view = Collections.unmodifiableList(comments);
+    private List<IXMLTag> tags_view;
+    private HashMap<String, ArrayList<IXMLElement>> name_index;
 
     /**
      * Crea un nuovo elemento generico con tutti i metodi base già implementati.
@@ -58,11 +64,24 @@ public class XMLElement implements IXMLElement {
     @Override
     public void addSubElement(IXMLElement element) {
         sub_elements.add(element);
+        if (name_index != null) {
+            name_index.computeIfAbsent(element.getName(), k -> new ArrayList<>(2)).add(element);
+        } else if (sub_elements.size() >= ProjectSettings.XML_ELEMENT_INDEX_THRESHOLD) {
+            buildIndex();
+        }
     }
 
     @Override
     public void removeSubElement(IXMLElement element) {
-        sub_elements.remove(element);
+        if (sub_elements.remove(element) && name_index != null) {
+            ArrayList<IXMLElement> same_name = name_index.get(element.getName());
+            if (same_name != null) {
+                same_name.remove(element);
+                if (same_name.isEmpty()) {
+                    name_index.remove(element.getName());
+                }
+            }
+        }
     }
 
     @Override
@@ -92,35 +111,104 @@ public class XMLElement implements IXMLElement {
 
     @Override
     public boolean hasElement(IXMLElement element) {
+        if (element != null && name_index != null) {
+            ArrayList<IXMLElement> same_name = name_index.get(element.getName());
+            return same_name != null && same_name.contains(element);
+        }
         return sub_elements.contains(element);
     }
 
     @Override
     public void addTag(IXMLTag tag) {
         tags.put(tag.getName(), tag);
+        tags_view = null;
     }
+
     @Override
     public void removeTag(IXMLTag tag) {
-        tags.remove(tag.getName(), tag);
+        if (tags.remove(tag.getName(), tag)) {
+            tags_view = null;
+        }
     }
 
+    /**
+     * {@inheritDoc}<br>
+     * La lista viene ricreata solo dopo che le tags sono state modificate.
+     */
     @Override
     public List<IXMLTag> getTags() {
-        ArrayList<IXMLTag> tgs = new ArrayList<>();
-        tgs.addAll(tags.values());
-        return Collections.unmodifiableList(tgs);
+        if (tags_view == null) {
+            tags_view = tags.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(tags.values()));
+        }
+        return tags_view;
+    }
+
+    @Override
+    public void forEachTag(Consumer<? super IXMLTag> action) {
+        tags.values().forEach(action);
     }
 
     @Override
     public List<IXMLElement> getElements() {
-        return Collections.unmodifiableList(sub_elements);
+        return sub_elements_view;
+    }
+
+    @Override
+    public void forEachElement(Consumer<? super IXMLElement> action) {
+        for (int i = 0; i < sub_elements.size(); i++) {
+            action.accept(sub_elements.get(i));
+        }
     }
 
     @Override
     public IXMLElement getFirstElement(String name) {
-        return sub_elements.stream().filter((t) -> {
-            return t.getName().equals(name);
-        }).findFirst().orElse(null);
+        if (name_index != null) {
+            ArrayList<IXMLElement> same_name = name_index.get(name);
+            return same_name != null ? same_name.get(0) : null;
+        }
+        for (IXMLElement element : sub_elements) {
+            if (element.getName().equals(name)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * La lista ritornata è sempre una copia: non viene modificata da
+     * successive aggiunte o rimozioni di sotto-elementi.
+     */
+    @Override
+    public List<IXMLElement> getElements(String name) {
+        if (name_index != null) {
+            ArrayList<IXMLElement> same_name = name_index.get(name);
+            return same_name != null ? Collections.unmodifiableList(new ArrayList<>(same_name)) : Collections.emptyList();
+        }
+        ArrayList<IXMLElement> found = null;
+        for (IXMLElement element : sub_elements) {
+            if (element.getName().equals(name)) {
+                if (found == null) {
+                    found = new ArrayList<>();
+                }
+                found.add(element);
+            }
+        }
+        return found != null ? Collections.unmodifiableList(found) : Collections.emptyList();
+    }
+
+    /**
+     * Crea l'indice dei sotto-elementi per nome quando i sotto-elementi
+     * raggiungono {@link ProjectSettings#XML_ELEMENT_INDEX_THRESHOLD}. Da quel
+     * momento l'indice viene aggiornato ad ogni aggiunta o rimozione, perciò
+     * i metodi di sola lettura non modificano mai l'elemento.
+     */
+    private void buildIndex() {
+        HashMap<String, ArrayList<IXMLElement>> index = new HashMap<>();
+        for (IXMLElement element : sub_elements) {
+            index.computeIfAbsent(element.getName(), k -> new ArrayList<>(2)).add(element);
+        }
+        name_index = index;
     }
 
     private boolean closed = false;
@@ -137,21 +225,25 @@ public class XMLElement implements IXMLElement {
 
     @Override
     public IXMLElement getLast() {
-        if (!closed) {
-            if (hasSubElements()) {
-                IXMLElement last = sub_elements.get(sub_elements.size() - 1).getLast();
-                if (last != null) {
-                    return last;
-                }
+        if (closed) {
+            return null;
+        }
+        IXMLElement last = this;
+        List<IXMLElement> elements = sub_elements;
+        while (!elements.isEmpty()) {
+            IXMLElement child = elements.get(elements.size() - 1);
+            if (child.isClosed()) {
+                break;
             }
-            return this;
+            last = child;
+            elements = child.getElements();
         }
-        return null;
+        return last;
     }
 
     @Override
     public List<IXMLComment> getComments() {
-        return Collections.unmodifiableList(comments);
+        return comments_view;
     }
 
     @Override
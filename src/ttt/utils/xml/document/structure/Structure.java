@@ -62,15 +62,14 @@ public class Structure {
      *
      * @param document Il documento principale.
      * @throws InvalidXMLFormat Nel caso in cui il documento non rispetti la
-     * struttura definita dai modelli.
+     * struttura definita dai modelli: il messaggio contiene tutti gli errori
+     * trovati.
      * @throws UninitializedMandatoryProperty Nel caso in cui il modello non sia
      * stato ancora impostato.
      */
     public void verify(XMLDocument document) throws InvalidXMLFormat, UninitializedMandatoryProperty {
         if (module != null) {
-            if (!module.validate(document.getElements())) {
-                throw new InvalidXMLFormat(read_errors.getString("invalid_doc_struct") + module.getLastError());
-            }
+            module.compile().verify(document);
         } else {
             throw new UninitializedMandatoryProperty(read_errors.getString("uninit_module"));
         }
@@ -15,11 +15,10 @@
  */
 package ttt.utils.xml.document.structure;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ResourceBundle;
-import java.util.stream.Stream;
 import ttt.utils.xml.document.structure.rules.Rules;
 import ttt.utils.xml.engine.interfaces.IXMLElement;
 
@@ -31,12 +30,16 @@ import ttt.utils.xml.engine.interfaces.IXMLElement;
  */
 public class StructureModule {
 
-    private static final ResourceBundle read_errors = ResourceBundle.getBundle("ttt/utils/resources/i18n/xml/read_errors");
-
-    private final HashMap<Class<? extends IXMLElement>, StructureModule> structure = new HashMap<>();
+    private final LinkedHashMap<Class<? extends IXMLElement>, StructureModule> structure = new LinkedHashMap<>();
     private final Class<? extends IXMLElement> clazz;
     private final Rules rule;
     private String last_error = "";
+    /**
+     * I moduli che contengono questo modulo, per invalidare anche i loro
+     * validatori quando questo modulo viene modificato.
+     */
+    private final HashSet<StructureModule> parents = new HashSet<>();
+    private volatile StructureValidator compiled;
 
     /**
      * Crea un nuovo modulo di verifica.
@@ -57,7 +60,12 @@ public class StructureModule {
      * agevole.
      */
     public StructureModule addModule(StructureModule m) {
-        structure.put(m.clazz, m);
+        StructureModule replaced = structure.put(m.clazz, m);
+        if (replaced != null && replaced != m) {
+            replaced.parents.remove(this);
+        }
+        m.parents.add(this);
+        invalidate(new HashSet<>());
         return this;
     }
 
@@ -67,7 +75,27 @@ public class StructureModule {
      * @param m Il modulo da rimuovere.
      */
     public void removeModule(StructureModule m) {
-        structure.remove(m.clazz);
+        StructureModule removed = structure.remove(m.clazz);
+        if (removed != null) {
+            removed.parents.remove(this);
+            invalidate(new HashSet<>());
+        }
+    }
+
+    /**
+     * Scarta il validatore compilato di questo modulo e di tutti i moduli
+     * che lo contengono.
+     *
+     * @param visited I moduli già invalidati (i moduli possono essere
+     * ricorsivi).
+     */
+    private void invalidate(HashSet<StructureModule> visited) {
+        if (visited.add(this)) {
+            compiled = null;
+            for (StructureModule parent : parents) {
+                parent.invalidate(visited);
+            }
+        }
     }
 
     /**
@@ -80,6 +108,51 @@ public class StructureModule {
         return last_error;
     }
 
+    /**
+     * Ritorna la classe verificata da questo modulo.
+     *
+     * @return La classe degli elementi.
+     */
+    public Class<? extends IXMLElement> getElementClass() {
+        return clazz;
+    }
+
+    /**
+     * Ritorna la regola che deve rispettare il numero di elementi.
+     *
+     * @return La regola del modulo.
+     */
+    public Rules getRule() {
+        return rule;
+    }
+
+    /**
+     * Ritorna i sotto-moduli nell'ordine in cui sono stati aggiunti.
+     *
+     * @return Una copia della lista dei sotto-moduli.
+     */
+    public List<StructureModule> getModules() {
+        return new ArrayList<>(structure.values());
+    }
+
+    /**
+     * Compila questo modulo e i suoi sotto-moduli in un
+     * {@link StructureValidator}, che può essere riutilizzato per verificare
+     * più documenti.<br>
+     * Il validatore viene compilato al primo utilizzo e riutilizzato finché
+     * il modulo o uno dei suoi sotto-moduli non viene modificato.
+     *
+     * @return Il validatore del modulo.
+     */
+    public StructureValidator compile() {
+        StructureValidator validator = compiled;
+        if (validator == null) {
+            validator = StructureValidator.compile(this);
+            compiled = validator;
+        }
+        return validator;
+    }
+
     /**
      * Metodo che si occupa di validare una lista di elementi.
      *
@@ -88,29 +161,9 @@ public class StructureModule {
      * sottomodulo sono verificati correttamente.
      */
     protected boolean validate(List<IXMLElement> struct) {
-        Stream<IXMLElement> filter = struct.stream().filter(e -> {
-            return e.getClass().equals(clazz);
-        });
-        long count = 0;
-        Iterator<IXMLElement> iterator = filter.iterator();
-        while (iterator.hasNext()) {
-            List<IXMLElement> els = iterator.next().getElements();
-            if (!structure.values().stream().noneMatch(sm -> {
-                boolean ver = !sm.validate(els);
-                if (ver) {
-                    last_error = sm.last_error;
-                }
-                return ver;
-            })) {
-                return false;
-            }
-            count++;
-        }
-        boolean valid = rule.valid(count);
-        if (!valid) {
-            last_error = clazz.getName() + read_errors.getString("fail");
-        }
-        return valid;
+        List<String> errors = compile().validate(struct);
+        last_error = errors.isEmpty() ? "" : String.join("; ", errors);
+        return errors.isEmpty();
     }
 
 }
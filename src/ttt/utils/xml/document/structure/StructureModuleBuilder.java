@@ -15,7 +15,10 @@
  */
 package ttt.utils.xml.document.structure;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import ttt.utils.ProjectSettings;
 import ttt.utils.xml.document.XMLDocument;
@@ -28,9 +31,52 @@ import ttt.utils.xml.engine.interfaces.IXMLElement;
  */
 public class StructureModuleBuilder {
 
+    /**
+     * Genera un modulo da una stringa che descrive la struttura.<br>
+     * Ogni modulo è indicato da un carattere associato ad una classe in
+     * {@code available_classes}, seguito facoltativamente dalla regola e dai
+     * sotto-moduli tra parentesi:
+     * <pre>
+     * modulo  := CHAR [ '?' | '*' | '+' ] [ '(' modulo* ')' ]
+     * </pre>
+     * Senza regola il modulo è {@link Rules#ONE}, mentre {@code ?},
+     * {@code *} e {@code +} corrispondono a {@link Rules#ZERO_TO_ONE},
+     * {@link Rules#ZERO_TO_INFINITE} e {@link Rules#ONE_TO_INFINITE}. Gli
+     * spazi vengono ignorati.<br>
+     * Ad esempio, con {@code r}, {@code i} e {@code n} associati alle classi
+     * della root, degli elementi e delle note, {@code "r(i+(n?))"} descrive
+     * una root con almeno un elemento, ognuno con al massimo una nota.
+     *
+     * @param build_struct La stringa che descrive la struttura.
+     * @param available_classes Le classi associate ai caratteri.
+     * @return Il modulo della root.
+     * @throws IllegalArgumentException Nel caso in cui la stringa non sia
+     * valida, contenga caratteri non associati ad una classe oppure due
+     * sotto-moduli dello stesso modulo con la stessa classe.
+     */
     public static StructureModule buildFromString(String build_struct, HashMap<Character, Class<? extends IXMLElement>> available_classes) {
-        //Troppo complesso, lo farò magari di giorno...
-        return null;
+        StructureParser parser = new StructureParser(build_struct, available_classes);
+        StructureModule module = parser.parseModule();
+        parser.skipSpaces();
+        if (parser.position < build_struct.length()) {
+            throw parser.error("unexpected '" + build_struct.charAt(parser.position) + "'");
+        }
+        return module;
+    }
+
+    /**
+     * Compila una stringa che descrive la struttura (vedi
+     * {@link #buildFromString(String, HashMap)}) in un validatore, che può
+     * essere condiviso tra più thread.
+     *
+     * @param build_struct La stringa che descrive la struttura.
+     * @param available_classes Le classi associate ai caratteri.
+     * @return Il validatore della struttura.
+     * @throws IllegalArgumentException Nel caso in cui la stringa non sia
+     * valida.
+     */
+    public static StructureValidator compileFromString(String build_struct, HashMap<Character, Class<? extends IXMLElement>> available_classes) {
+        return buildFromString(build_struct, available_classes).compile();
     }
 
     /**
@@ -45,31 +91,240 @@ public class StructureModuleBuilder {
         return s;
     }
 
+    /**
+     * Genera una struttura da più documenti xml di esempio (vedi
+     * {@link #buildModulesFromDocuments(XMLDocument...)}).
+     *
+     * @param documents I documenti da cui estrarre la struttura di verifica.
+     * @return La struttura di verifica.
+     */
+    public static Structure buildFromDocuments(XMLDocument... documents) {
+        Structure s = new Structure();
+        s.setStructureModel(buildModulesFromDocuments(documents));
+        return s;
+    }
+
     /**
      * Genera tutti i moduli necessari per verificare in modo corretto il
-     * documento specificato.
+     * documento specificato.<br>
+     * Il documento viene visitato una sola volta: per ogni percorso di
+     * classi vengono uniti i conteggi di tutte le istanze, perciò un
+     * elemento assente in almeno un'istanza del padre può avere zero
+     * occorrenze anche se {@link ProjectSettings#XML_STRUCTURE_ZERO_ALLOWED}
+     * è {@code false}.
      *
      * @param document Documento da cui estrarre i moduli di verifica.
      * @return Il modulo di verifica per la root contenente tutti i sottomoduli.
      */
     public static StructureModule buildModulesFromDocument(XMLDocument document) {
-        IXMLElement root = document.getRoot();
-        StructureModule root_module = new StructureModule(root.getClass(), Rules.ONE);
-        externalizeModule(root_module, root.getElements());
-        return root_module;
+        return Inference.of(document).toModule();
+    }
+
+    /**
+     * Come {@link #buildModulesFromDocument(XMLDocument)}, unendo i conteggi
+     * osservati in tutti i documenti specificati. I documenti vengono
+     * analizzati in parallelo.
+     *
+     * @param documents I documenti da cui estrarre i moduli di verifica.
+     * @return Il modulo di verifica per la root contenente tutti i sottomoduli.
+     * @throws IllegalArgumentException Nel caso in cui non sia specificato
+     * nessun documento oppure le root dei documenti non siano della stessa
+     * classe.
+     */
+    public static StructureModule buildModulesFromDocuments(XMLDocument... documents) {
+        if (documents.length == 0) {
+            throw new IllegalArgumentException("No documents");
+        }
+        return Arrays.stream(documents).parallel().map(Inference::of).reduce(Inference::merge).get().toModule();
+    }
+
+    /**
+     * Conteggi osservati per una classe in un certo percorso del documento:
+     * il numero di istanze del padre, in quante di queste la classe è
+     * presente e il numero massimo di occorrenze in una singola istanza.
+     */
+    private static final class Inference {
+
+        private final Class<? extends IXMLElement> clazz;
+        private final LinkedHashMap<Class<? extends IXMLElement>, Inference> children = new LinkedHashMap<>();
+        private int instances;
+        private int present_in;
+        private int max;
+        private int current;
+        private long stamp = -1;
+
+        private Inference(Class<? extends IXMLElement> clazz) {
+            this.clazz = clazz;
+        }
+
+        private static Inference of(XMLDocument document) {
+            IXMLElement root = document.getRoot();
+            Inference inference = new Inference(root.getClass());
+            inference.instances = 1;
+            inference.present_in = 1;
+            inference.max = 1;
+            inference.visit(root, new long[1]);
+            return inference;
+        }
+
+        /**
+         * Conta i sotto-elementi di un'istanza e visita ricorsivamente
+         * ognuno di essi.
+         *
+         * @param element L'istanza.
+         * @param counter Il contatore che distingue le istanze visitate.
+         */
+        private void visit(IXMLElement element, long[] counter) {
+            List<IXMLElement> elements = element.getElements();
+            long instance = counter[0]++;
+            for (int i = 0; i < elements.size(); i++) {
+                IXMLElement sub = elements.get(i);
+                Inference child = children.get(sub.getClass());
+                if (child == null) {
+                    child = new Inference(sub.getClass());
+                    children.put(child.clazz, child);
+                }
+                if (child.stamp != instance) {
+                    child.stamp = instance;
+                    child.current = 0;
+                    child.present_in++;
+                }
+                child.max = Math.max(child.max, ++child.current);
+                child.instances++;
+            }
+            for (int i = 0; i < elements.size(); i++) {
+                IXMLElement sub = elements.get(i);
+                children.get(sub.getClass()).visit(sub, counter);
+            }
+        }
+
+        /**
+         * Unisce i conteggi di un'altra analisi in questa.
+         *
+         * @param other L'analisi da unire.
+         * @return Questa analisi.
+         */
+        private Inference merge(Inference other) {
+            if (!clazz.equals(other.clazz)) {
+                throw new IllegalArgumentException("Different roots: " + clazz.getName() + ", " + other.clazz.getName());
+            }
+            mergeCounts(other);
+            return this;
+        }
+
+        private void mergeCounts(Inference other) {
+            instances += other.instances;
+            present_in += other.present_in;
+            max = Math.max(max, other.max);
+            for (Inference child : other.children.values()) {
+                Inference own = children.get(child.clazz);
+                if (own == null) {
+                    children.put(child.clazz, child);
+                } else {
+                    own.mergeCounts(child);
+                }
+            }
+        }
+
+        /**
+         * Genera il modulo della root.
+         *
+         * @return Il modulo con tutti i sotto-moduli.
+         */
+        private StructureModule toModule() {
+            StructureModule module = new StructureModule(clazz, Rules.ONE);
+            addModules(module);
+            return module;
+        }
+
+        private void addModules(StructureModule module) {
+            for (Inference child : children.values()) {
+                //Le istanze di questo nodo sono i padri dei sotto-elementi
+                boolean zero_allowed = ProjectSettings.XML_STRUCTURE_ZERO_ALLOWED || child.present_in < instances;
+                StructureModule sm = new StructureModule(child.clazz, Rules.getAppropriate(child.max, zero_allowed));
+                child.addModules(sm);
+                module.addModule(sm);
+            }
+        }
     }
 
-    private static void externalizeModule(StructureModule parent, List<IXMLElement> elems) {
-        HashMap<Class<? extends IXMLElement>, StructureModule> ns = new HashMap<>();
-        for (IXMLElement elem : elems) {
-            if (!ns.containsKey(elem.getClass())) {
-                StructureModule sm = new StructureModule(elem.getClass(), Rules.getAppropriate(elems.stream().filter((t) -> {
-                    return t.getClass().equals(elem.getClass());
-                }).count(), ProjectSettings.XML_STRUCTURE_ZERO_ALLOWED));
-                ns.put(elem.getClass(), sm);
-                externalizeModule(sm, elem.getElements());
-                parent.addModule(sm);
+    /**
+     * Analizza la stringa di {@link #buildFromString(String, HashMap)}.
+     */
+    private static final class StructureParser {
+
+        private final String struct;
+        private final HashMap<Character, Class<? extends IXMLElement>> classes;
+        private int position = 0;
+
+        private StructureParser(String struct, HashMap<Character, Class<? extends IXMLElement>> classes) {
+            this.struct = struct;
+            this.classes = classes;
+        }
+
+        private StructureModule parseModule() {
+            skipSpaces();
+            if (position >= struct.length()) {
+                throw error("module expected");
+            }
+            char c = struct.charAt(position);
+            Class<? extends IXMLElement> clazz = classes.get(c);
+            if (clazz == null) {
+                throw error("no class for '" + c + "'");
             }
+            position++;
+            skipSpaces();
+            Rules rule = Rules.ONE;
+            if (position < struct.length()) {
+                switch (struct.charAt(position)) {
+                    case '?':
+                        rule = Rules.ZERO_TO_ONE;
+                        position++;
+                        break;
+                    case '*':
+                        rule = Rules.ZERO_TO_INFINITE;
+                        position++;
+                        break;
+                    case '+':
+                        rule = Rules.ONE_TO_INFINITE;
+                        position++;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            StructureModule module = new StructureModule(clazz, rule);
+            skipSpaces();
+            if (position < struct.length() && struct.charAt(position) == '(') {
+                position++;
+                HashSet<Class<? extends IXMLElement>> added = new HashSet<>();
+                skipSpaces();
+                while (position < struct.length() && struct.charAt(position) != ')') {
+                    int start = position;
+                    StructureModule sub = parseModule();
+                    if (!added.add(sub.getElementClass())) {
+                        position = start;
+                        throw error("duplicated module for " + sub.getElementClass().getName());
+                    }
+                    module.addModule(sub);
+                    skipSpaces();
+                }
+                if (position >= struct.length()) {
+                    throw error("')' expected");
+                }
+                position++;
+            }
+            return module;
+        }
+
+        private void skipSpaces() {
+            while (position < struct.length() && Character.isWhitespace(struct.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid structure '" + struct + "' at " + position + ": " + message);
         }
     }
 
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.document.structure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import ttt.utils.xml.document.structure.exception.InvalidXMLFormat;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+import ttt.utils.xml.io.IXMLAttributes;
+import ttt.utils.xml.io.IXMLHandler;
+
+/**
+ * Handler che verifica la struttura di un documento durante la lettura,
+ * prima di passare ogni evento all'handler specificato.<br>
+ * La classe di ogni elemento viene ricavata dal suo nome. Il numero massimo
+ * di elementi di una regola viene controllato all'apertura di ogni elemento,
+ * mentre il numero minimo alla chiusura dell'elemento che li contiene: al
+ * primo errore viene lanciata una {@link InvalidXMLFormat}, senza leggere il
+ * resto del documento.<br>
+ * Il risultato della verifica è lo stesso di
+ * {@link StructureValidator#verify(ttt.utils.xml.document.XMLDocument)}
+ * eseguito sul documento completo, ma riporta solo i primi errori trovati.
+ * Ogni istanza può essere usata per una sola lettura.
+ *
+ * @author TTT
+ */
+public final class StructureValidatingHandler implements IXMLHandler {
+
+    private static final ResourceBundle read_errors = ResourceBundle.getBundle("ttt/utils/resources/i18n/xml/read_errors");
+
+    private final IXMLHandler handler;
+    private final Map<String, Class<? extends IXMLElement>> classes;
+    private final Class<? extends IXMLElement> default_class;
+    private final ArrayList<String> path = new ArrayList<>();
+    private StructureValidator.Node[] nodes = new StructureValidator.Node[16];
+    private int[][] counts = new int[16][];
+    private int depth = 0;
+    private int skipped = 0;
+
+    /**
+     * Crea un nuovo handler di verifica.
+     *
+     * @param validator Il validatore della struttura.
+     * @param classes Le classi degli elementi associate al loro nome.
+     * @param default_class La classe degli elementi il cui nome non è
+     * presente in {@code classes}.
+     * @param handler L'handler che riceve gli eventi dopo la verifica.
+     */
+    public StructureValidatingHandler(StructureValidator validator, Map<String, Class<? extends IXMLElement>> classes, Class<? extends IXMLElement> default_class, IXMLHandler handler) {
+        this.handler = handler;
+        this.classes = classes;
+        this.default_class = default_class;
+        StructureValidator.Node root = validator.getRoot();
+        nodes[0] = root;
+        counts[0] = new int[root.children.length];
+    }
+
+    @Override
+    public void onStart(String name, IXMLAttributes attributes) {
+        if (skipped > 0) {
+            skipped++;
+        } else {
+            StructureValidator.Node parent = nodes[depth];
+            Class<? extends IXMLElement> clazz = classes.get(name);
+            int slot = parent.getSlot(clazz != null ? clazz : default_class);
+            if (slot < 0) {
+                skipped = 1;
+            } else {
+                StructureValidator.Node node = parent.children[slot];
+                int count = ++counts[depth][slot];
+                if (node.rule.getMax() >= 0 && count > node.rule.getMax()) {
+                    throw new InvalidXMLFormat(read_errors.getString("invalid_doc_struct") + node.describe(path, count));
+                }
+                push(node);
+                path.add(name);
+            }
+        }
+        handler.onStart(name, attributes);
+    }
+
+    @Override
+    public void onText(char[] text, int start, int length) {
+        handler.onText(text, start, length);
+    }
+
+    @Override
+    public void onEnd(String name) {
+        if (skipped > 0) {
+            skipped--;
+        } else {
+            check();
+            counts[depth] = null;
+            depth--;
+            path.remove(path.size() - 1);
+        }
+        if (skipped == 0 && depth == 0) {
+            //Chiusura della root: il documento è completo
+            check();
+        }
+        handler.onEnd(name);
+    }
+
+    @Override
+    public void onComment(String comment) {
+        handler.onComment(comment);
+    }
+
+    private void push(StructureValidator.Node node) {
+        if (++depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, depth * 2);
+            counts = Arrays.copyOf(counts, depth * 2);
+        }
+        nodes[depth] = node;
+        counts[depth] = node.children.length > 0 ? new int[node.children.length] : null;
+    }
+
+    /**
+     * Controlla il numero minimo di elementi dei figli dell'elemento aperto.
+     */
+    private void check() {
+        StructureValidator.Node node = nodes[depth];
+        List<String> errors = null;
+        for (int i = 0; i < node.children.length; i++) {
+            if (!node.children[i].rule.valid(counts[depth][i])) {
+                if (errors == null) {
+                    errors = new ArrayList<>();
+                }
+                errors.add(node.children[i].describe(path, counts[depth][i]));
+            }
+        }
+        if (errors != null) {
+            throw new InvalidXMLFormat(read_errors.getString("invalid_doc_struct") + String.join("; ", errors));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.document.structure;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import ttt.utils.xml.document.XMLDocument;
+import ttt.utils.xml.document.structure.exception.InvalidXMLFormat;
+import ttt.utils.xml.document.structure.rules.Rules;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+
+/**
+ * Versione compilata e immutabile di un albero di {@link StructureModule}.
+ * <br>
+ * Per ogni lista di elementi vengono contati in un solo passaggio gli
+ * elementi di ogni classe prevista dal modulo, perciò ogni elemento del
+ * documento viene visitato una sola volta indipendentemente dal numero di
+ * moduli. A differenza di {@link StructureModule} vengono riportati tutti gli
+ * errori trovati e non solo l'ultimo.<br>
+ * Un validatore può essere usato contemporaneamente da più thread.
+ *
+ * @author TTT
+ */
+public final class StructureValidator {
+
+    private static final ResourceBundle read_errors = ResourceBundle.getBundle("ttt/utils/resources/i18n/xml/read_errors");
+
+    private final Node root;
+
+    private StructureValidator(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compila un modulo e tutti i suoi sotto-moduli. Le modifiche successive
+     * al modulo non hanno effetto sul validatore.
+     *
+     * @param module Il modulo principale (quello della root).
+     * @return Il validatore.
+     */
+    public static StructureValidator compile(StructureModule module) {
+        Node doc = new Node(null, null);
+        doc.setChildren(Collections.singletonList(module), new IdentityHashMap<>());
+        return new StructureValidator(doc);
+    }
+
+    /**
+     * Verifica un documento XML.
+     *
+     * @param document Il documento da verificare.
+     * @throws InvalidXMLFormat Nel caso in cui il documento non rispetti la
+     * struttura: il messaggio contiene tutti gli errori trovati.
+     */
+    public void verify(XMLDocument document) throws InvalidXMLFormat {
+        List<String> errors = validate(document.getElements());
+        if (!errors.isEmpty()) {
+            throw new InvalidXMLFormat(read_errors.getString("invalid_doc_struct") + String.join("; ", errors));
+        }
+    }
+
+    /**
+     * Verifica una lista di elementi, che deve contenere l'elemento
+     * corrispondente al modulo principale.
+     *
+     * @param elements Gli elementi da verificare.
+     * @return Gli errori trovati, oppure una lista vuota se gli elementi
+     * rispettano la struttura.
+     */
+    public List<String> validate(List<? extends IXMLElement> elements) {
+        ArrayList<String> errors = new ArrayList<>();
+        validate(root, elements, new ArrayList<>(), errors);
+        return errors;
+    }
+
+    /**
+     * Ritorna il nodo che rappresenta la lista di elementi del documento: il
+     * suo unico figlio è il modulo principale.
+     *
+     * @return Il nodo del documento.
+     */
+    Node getRoot() {
+        return root;
+    }
+
+    private static void validate(Node node, List<? extends IXMLElement> elements, ArrayList<String> path, ArrayList<String> errors) {
+        int[] counts = new int[node.children.length];
+        for (int i = 0; i < elements.size(); i++) {
+            IXMLElement element = elements.get(i);
+            int slot = node.getSlot(element.getClass());
+            if (slot >= 0) {
+                counts[slot]++;
+                Node child = node.children[slot];
+                if (child.children.length > 0) {
+                    path.add(element.getName());
+                    validate(child, element.getElements(), path, errors);
+                    path.remove(path.size() - 1);
+                }
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (!node.children[i].rule.valid(counts[i])) {
+                errors.add(node.children[i].describe(path, counts[i]));
+            }
+        }
+    }
+
+    /**
+     * Nodo compilato: la classe e la regola di un modulo e i nodi dei suoi
+     * sotto-moduli, indicizzati per classe. Un modulo utilizzato in più
+     * punti (anche ricorsivamente) viene compilato in un unico nodo.
+     */
+    static final class Node {
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        final Class<? extends IXMLElement> clazz;
+        final Rules rule;
+        Node[] children = NO_CHILDREN;
+        private Map<Class<?>, Integer> index = Collections.emptyMap();
+
+        private Node(Class<? extends IXMLElement> clazz, Rules rule) {
+            this.clazz = clazz;
+            this.rule = rule;
+        }
+
+        private void setChildren(List<StructureModule> modules, IdentityHashMap<StructureModule, Node> compiled) {
+            if (modules.isEmpty()) {
+                return;
+            }
+            Node[] nodes = new Node[modules.size()];
+            HashMap<Class<?>, Integer> map = new HashMap<>(modules.size() * 2);
+            for (int i = 0; i < nodes.length; i++) {
+                StructureModule module = modules.get(i);
+                Node child = compiled.get(module);
+                if (child == null) {
+                    child = new Node(module.getElementClass(), module.getRule());
+                    compiled.put(module, child);
+                    child.setChildren(module.getModules(), compiled);
+                }
+                nodes[i] = child;
+                map.put(child.clazz, i);
+            }
+            children = nodes;
+            index = map;
+        }
+
+        /**
+         * Ritorna la posizione in {@link #children} del sotto-modulo che
+         * corrisponde alla classe.
+         *
+         * @param clazz La classe dell'elemento.
+         * @return La posizione oppure {@code -1} se la classe non fa parte del
+         * modulo.
+         */
+        int getSlot(Class<?> clazz) {
+            Integer slot = index.get(clazz);
+            return slot != null ? slot : -1;
+        }
+
+        /**
+         * Descrive la violazione della regola di questo nodo.
+         *
+         * @param path I nomi degli elementi che contengono quello non
+         * valido.
+         * @param count Il numero di elementi trovati.
+         * @return Il messaggio di errore.
+         */
+        String describe(List<String> path, int count) {
+            StringBuilder sb = new StringBuilder();
+            for (String name : path) {
+                sb.append('/').append(name);
+            }
+            sb.append(sb.length() > 0 ? " " : "").append(clazz.getName()).append(read_errors.getString("fail"));
+            sb.append(MessageFormat.format(read_errors.getString("occurrences"), count, rule));
+            return sb.toString();
+        }
+    }
+}
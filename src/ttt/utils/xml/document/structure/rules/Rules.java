@@ -47,6 +47,24 @@ public enum Rules {
         this.max = max;
     }
 
+    /**
+     * Ritorna il numero minimo di elementi.
+     *
+     * @return Il minimo.
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Ritorna il numero massimo di elementi.
+     *
+     * @return Il massimo oppure {@code -1} se non c'è un limite.
+     */
+    public int getMax() {
+        return max;
+    }
+
     /**
      * Controlla che la quantità sia compresa nella regola.
      *
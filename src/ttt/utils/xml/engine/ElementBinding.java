@@ -0,0 +1,512 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.engine;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import ttt.utils.engines.enums.FieldType;
+import ttt.utils.engines.enums.MethodType;
+import ttt.utils.engines.interfaces.EngineField;
+import ttt.utils.engines.interfaces.EngineMethod;
+import ttt.utils.engines.utils.EngineUtils;
+import ttt.utils.xml.engine.annotations.Element;
+import ttt.utils.xml.document.XMLTag;
+import ttt.utils.xml.engine.annotations.Tag;
+import ttt.utils.xml.engine.interfaces.IXMLBinder;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+import ttt.utils.xml.engine.interfaces.IXMLTag;
+
+/**
+ * Contiene le informazioni di collegamento di una classe elemento: i metodi
+ * {@link MethodType#SET} e {@link MethodType#GET}, le variabili annotate con
+ * {@link EngineField} e i metodi {@link MethodType#CALC}.<br>
+ * Le informazioni vengono calcolate una sola volta per classe tramite
+ * reflection e poi riutilizzate per ogni istanza, perciò collegare un
+ * elemento consiste solo nello scorrere gli accessori già risolti.<br>
+ * Gli accessori delle tags sono {@link MethodHandle} adattati al tipo della
+ * tag: i valori primitivi vengono letti e impostati senza boxing.<br>
+ * Se per la classe esiste un binder generato da {@code XMLBinderProcessor},
+ * l'istanziazione, il collegamento, i calcoli e l'aggiornamento delle tags
+ * vengono delegati al binder e gli accessori tramite reflection non vengono
+ * creati.
+ *
+ * @author TTT
+ */
+final class ElementBinding {
+
+    /**
+     * Le informazioni sono associate alla classe stessa, perciò non impediscono
+     * lo scaricamento del suo class loader.
+     */
+    private static final ClassValue<ElementBinding> bindings = new ClassValue<ElementBinding>() {
+        @Override
+        protected ElementBinding computeValue(Class<?> type) {
+            return new ElementBinding(type);
+        }
+    };
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private final Class<?> clazz;
+    private final Element annotation;
+    private final IXMLBinder<IXMLElement> binder;
+    private final Constructor<?> constructor;
+    private final TagSetter[] setters;
+    private final TagGetter[] getters;
+    private final Method[] calc_methods;
+    private final Set<String> writeable_tags;
+    private final boolean write_sub_elements;
+
+    /**
+     * Ritorna le informazioni di collegamento di una classe, calcolandole se
+     * non ancora presenti.
+     *
+     * @param c La classe elemento.
+     * @return Le informazioni di collegamento.
+     */
+    static ElementBinding of(Class<?> c) {
+        return bindings.get(c);
+    }
+
+    private ElementBinding(Class<?> c) {
+        this.clazz = c;
+        this.annotation = XMLEngine.getAnnotationFrom(c);
+        this.binder = annotation != null ? findBinder(c) : null;
+        Constructor<?> constr = null;
+        if (binder == null) {
+            try {
+                constr = c.getConstructor();
+            } catch (NoSuchMethodException | SecurityException ex) {
+                //La classe non può essere istanziata dall'engine
+            }
+        }
+        this.constructor = constr;
+        ArrayList<TagSetter> sts = new ArrayList<>();
+        ArrayList<TagGetter> gts = new ArrayList<>();
+        ArrayList<Method> calcs = new ArrayList<>();
+        ArrayList<String> wts = new ArrayList<>();
+        if (annotation != null && binder != null) {
+            if (annotation.CanHaveTags()) {
+                for (Field f : c.getDeclaredFields()) {
+                    EngineField meta = f.getAnnotation(EngineField.class);
+                    Tag tag_annot = f.getAnnotation(Tag.class);
+                    if (meta != null && tag_annot != null
+                            && (meta.FieldType() == FieldType.READ_AND_WRITE || meta.FieldType() == FieldType.WRITE)) {
+                        wts.add(tag_annot.Name());
+                    }
+                }
+            }
+        } else if (annotation != null) {
+            for (Method m : c.getDeclaredMethods()) {
+                EngineMethod meta = m.getAnnotation(EngineMethod.class);//Il metodo deve essre annotato con @EngineMethod
+                if (meta != null) {
+                    Tag tag_annot = m.getAnnotation(Tag.class);
+                    if (meta.MethodType() == MethodType.SET) {
+                        if (annotation.CanHaveTags() && tag_annot != null && m.getParameterCount() == 1) {
+                            Class<?> param1 = m.getParameterTypes()[0];
+                            if (param1.equals(tag_annot.ValueType()) && isSupported(param1)) {
+                                addAccessor(sts, () -> new TagSetter(tag_annot.Name(), param1, receiver(unreflect(m), m.getModifiers())));
+                            }
+                        }
+                    } else if (meta.MethodType() == MethodType.GET) {
+                        if (annotation.CanHaveTags() && tag_annot != null && m.getParameterCount() == 0 && m.getReturnType() != void.class) {
+                            addAccessor(gts, () -> new TagGetter(tag_annot.Name(), m.getReturnType(), receiver(unreflect(m), m.getModifiers())));
+                        }
+                    } else if (meta.MethodType() == MethodType.CALC && m.getParameterCount() == 0) {
+                        calcs.add(m);
+                    }
+                }
+            }
+            for (Field f : c.getDeclaredFields()) {
+                f.setAccessible(true);
+                EngineField meta = f.getAnnotation(EngineField.class);
+                Tag tag_annot = f.getAnnotation(Tag.class);
+                if (meta != null && tag_annot != null && annotation.CanHaveTags()) {
+                    if ((meta.FieldType() == FieldType.READ_AND_WRITE || meta.FieldType() == FieldType.READ) && isSupported(f.getType())) {
+                        addAccessor(sts, () -> new TagSetter(tag_annot.Name(), f.getType(), receiver(lookup.unreflectSetter(f), f.getModifiers())));
+                    }
+                    if (meta.FieldType() == FieldType.READ_AND_WRITE || meta.FieldType() == FieldType.WRITE) {
+                        addAccessor(gts, () -> new TagGetter(tag_annot.Name(), f.getType(), receiver(lookup.unreflectGetter(f), f.getModifiers())));
+                        wts.add(tag_annot.Name());
+                    }
+                }
+            }
+        }
+        this.setters = sts.toArray(new TagSetter[sts.size()]);
+        this.getters = gts.toArray(new TagGetter[gts.size()]);
+        this.calc_methods = calcs.toArray(new Method[calcs.size()]);
+        this.writeable_tags = wts.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(wts));
+        this.write_sub_elements = annotation != null && !annotation.IgnoreSubElementsOnWrite();
+    }
+
+    /**
+     * Cerca il binder generato da {@code XMLBinderProcessor} per la classe.
+     *
+     * @param c La classe elemento.
+     * @return Il binder oppure {@code null} se non è stato generato.
+     */
+    @SuppressWarnings("unchecked")
+    private static IXMLBinder<IXMLElement> findBinder(Class<?> c) {
+        String name = c.getName();
+        int pkg = name.lastIndexOf('.') + 1;
+        String binder_name = name.substring(0, pkg) + name.substring(pkg).replace('$', '_') + IXMLBinder.BINDER_SUFFIX;
+        try {
+            Class<?> binder_class = Class.forName(binder_name, true, c.getClassLoader());
+            if (IXMLBinder.class.isAssignableFrom(binder_class)) {
+                return (IXMLBinder<IXMLElement>) binder_class.getConstructor().newInstance();
+            }
+        } catch (ClassNotFoundException ex) {
+            //Nessun binder generato: viene usata la reflection
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError ex) {
+            Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    private static boolean isSupported(Class<?> type) {
+        return type == String.class || EngineUtils.isPrimitive(type) || EngineUtils.isBoxed(type);
+    }
+
+    private static MethodHandle unreflect(Method m) throws IllegalAccessException {
+        m.setAccessible(true);
+        return lookup.unreflect(m);
+    }
+
+    /**
+     * Adatta un accessore statico in modo che accetti (e ignori) l'elemento
+     * come primo parametro, come gli accessori d'istanza.
+     */
+    private static MethodHandle receiver(MethodHandle mh, int modifiers) {
+        return Modifier.isStatic(modifiers) ? MethodHandles.dropArguments(mh, 0, IXMLElement.class) : mh;
+    }
+
+    private static <T> void addAccessor(ArrayList<T> accessors, AccessorFactory<T> factory) {
+        try {
+            accessors.add(factory.create());
+        } catch (IllegalAccessException | RuntimeException ex) {
+            Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Ritorna l'annotazione {@link Element} della classe.
+     *
+     * @return L'annotazione oppure {@code null} se non presente.
+     */
+    Element getAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * Ritorna se una tag deve essere scritta: solo le tags collegate a
+     * variabili {@link FieldType#WRITE} o {@link FieldType#READ_AND_WRITE}
+     * vengono scritte (e solo se l'annotazione {@link Element} permette le
+     * tags).
+     *
+     * @param name Il nome della tag.
+     * @return {@code true} se la tag deve essere scritta.
+     */
+    boolean isWriteableTag(String name) {
+        return writeable_tags.contains(name);
+    }
+
+    /**
+     * Ritorna se i sotto-elementi devono essere scritti, cioè se la classe è
+     * annotata con {@link Element} e non ignora i sotto-elementi.
+     *
+     * @return {@code true} se i sotto-elementi devono essere scritti.
+     */
+    boolean isWriteSubElements() {
+        return write_sub_elements;
+    }
+
+    /**
+     * Crea una nuova istanza della classe tramite il costruttore senza
+     * parametri.
+     *
+     * @return La nuova istanza.
+     * @throws NoSuchMethodException Nel caso in cui la classe non abbia un
+     * costruttore pubblico senza parametri.
+     * @throws InstantiationException Nel caso in cui la classe sia astratta.
+     * @throws IllegalAccessException Nel caso in cui il costruttore non sia
+     * accessibile.
+     * @throws InvocationTargetException Nel caso in cui il costruttore lanci
+     * un'eccezione.
+     */
+    IXMLElement newInstance() throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+        if (binder != null) {
+            return binder.newInstance();
+        }
+        if (constructor == null) {
+            throw new NoSuchMethodException(clazz.getName() + ".<init>()");
+        }
+        return (IXMLElement) constructor.newInstance();
+    }
+
+    /**
+     * Trasferisce il valore e le tags collegate di un elemento in quello di
+     * destinazione (che deve essere un'istanza della classe di questo
+     * collegamento).<br>
+     * Le tags assenti lasciano invariate le variabili primitive, mentre
+     * impostano a {@code null} quelle di tipo {@link String} o boxed.
+     *
+     * @param from L'elemento da cui leggere i valori.
+     * @param to L'elemento di destinazione.
+     */
+    void bind(IXMLElement from, IXMLElement to) {
+        if (binder != null) {
+            binder.bind(from, to);
+        } else if (annotation != null) {
+            if (annotation.CanHaveValue()) {
+                to.setValue(from.getValue());
+            }
+            for (TagSetter setter : setters) {
+                IXMLTag effective_tag = from.getTag(setter.name);
+                setter.set(to, effective_tag != null ? effective_tag.getValue() : null);
+            }
+        }
+    }
+
+    /**
+     * Esegue i metodi {@link MethodType#CALC} dell'elemento.
+     *
+     * @param to L'elemento su cui eseguire i metodi.
+     */
+    void calc(IXMLElement to) {
+        if (binder != null) {
+            binder.calc(to);
+            return;
+        }
+        for (Method method : calc_methods) {
+            try {
+                method.invoke(to);
+            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
+                Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Aggiorna le tags dell'elemento con i valori dei metodi
+     * {@link MethodType#GET} e delle variabili {@link FieldType#WRITE},
+     * creando quelle non ancora presenti.
+     *
+     * @param exec L'elemento da aggiornare.
+     */
+    void applyChanges(IXMLElement exec) {
+        if (binder != null) {
+            binder.applyChanges(exec);
+            return;
+        }
+        for (TagGetter getter : getters) {
+            IXMLTag effective_tag = exec.getTag(getter.name);
+            if (effective_tag == null) {
+                effective_tag = new XMLTag(getter.name);
+                exec.addTag(effective_tag);
+            }
+            getter.get(exec, effective_tag);
+        }
+    }
+
+    /**
+     * Il tipo di valore gestito da un accessore: ogni tipo primitivo ha un
+     * proprio percorso, gli altri valori vengono gestiti come
+     * {@link Object}.
+     */
+    private enum ValueKind {
+        STRING, INT, LONG, DOUBLE, FLOAT, BOOLEAN, BYTE, CHAR, SHORT, OBJECT;
+
+        private static ValueKind of(Class<?> type) {
+            if (type == String.class) {
+                return STRING;
+            } else if (type == int.class) {
+                return INT;
+            } else if (type == long.class) {
+                return LONG;
+            } else if (type == double.class) {
+                return DOUBLE;
+            } else if (type == float.class) {
+                return FLOAT;
+            } else if (type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == byte.class) {
+                return BYTE;
+            } else if (type == char.class) {
+                return CHAR;
+            } else if (type == short.class) {
+                return SHORT;
+            }
+            return OBJECT;
+        }
+
+        private Class<?> handleType(Class<?> type) {
+            return this == OBJECT ? Object.class : type;
+        }
+    }
+
+    @FunctionalInterface
+    private interface AccessorFactory<T> {
+
+        T create() throws IllegalAccessException;
+    }
+
+    /**
+     * Accessore in scrittura di una tag: un metodo {@link MethodType#SET}
+     * oppure una variabile, il cui {@link MethodHandle} ha tipo
+     * {@code (IXMLElement, tipo)void}.
+     */
+    private static final class TagSetter {
+
+        private final String name;
+        private final Class<?> type;
+        private final ValueKind kind;
+        private final MethodHandle handle;
+
+        private TagSetter(String name, Class<?> type, MethodHandle mh) {
+            this.name = name;
+            this.type = type;
+            this.kind = ValueKind.of(type);
+            this.handle = mh.asType(java.lang.invoke.MethodType.methodType(void.class, IXMLElement.class, kind.handleType(type)));
+        }
+
+        private void set(IXMLElement to, String value) {
+            try {
+                switch (kind) {
+                    case STRING:
+                        handle.invokeExact(to, value);
+                        break;
+                    case OBJECT:
+                        handle.invokeExact(to, value != null ? EngineUtils.convertStringToPrimitive(value, type) : (Object) null);
+                        break;
+                    default:
+                        if (value != null) {
+                            setPrimitive(to, value);
+                        }
+                        break;
+                }
+            } catch (Error er) {
+                throw er;
+            } catch (Throwable ex) {
+                Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        private void setPrimitive(IXMLElement to, String value) throws Throwable {
+            switch (kind) {
+                case INT:
+                    handle.invokeExact(to, Integer.parseInt(value));
+                    break;
+                case LONG:
+                    handle.invokeExact(to, Long.parseLong(value));
+                    break;
+                case DOUBLE:
+                    handle.invokeExact(to, Double.parseDouble(value));
+                    break;
+                case FLOAT:
+                    handle.invokeExact(to, Float.parseFloat(value));
+                    break;
+                case BOOLEAN:
+                    handle.invokeExact(to, Boolean.parseBoolean(value));
+                    break;
+                case BYTE:
+                    handle.invokeExact(to, Byte.parseByte(value));
+                    break;
+                case CHAR:
+                    handle.invokeExact(to, value.charAt(0));
+                    break;
+                case SHORT:
+                    handle.invokeExact(to, Short.parseShort(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Accessore in lettura di una tag: un metodo {@link MethodType#GET}
+     * oppure una variabile, il cui {@link MethodHandle} ha tipo
+     * {@code (IXMLElement)tipo}.
+     */
+    private static final class TagGetter {
+
+        private final String name;
+        private final ValueKind kind;
+        private final MethodHandle handle;
+
+        private TagGetter(String name, Class<?> type, MethodHandle mh) {
+            this.name = name;
+            this.kind = ValueKind.of(type) == ValueKind.STRING ? ValueKind.OBJECT : ValueKind.of(type);
+            this.handle = mh.asType(java.lang.invoke.MethodType.methodType(kind.handleType(type), IXMLElement.class));
+        }
+
+        /**
+         * Legge il valore dall'elemento e lo imposta nella tag. I valori
+         * {@code null} vengono scritti come stringa vuota.
+         *
+         * @param exec L'elemento da cui leggere il valore.
+         * @param tag La tag in cui salvare il valore.
+         */
+        private void get(IXMLElement exec, IXMLTag tag) {
+            try {
+                switch (kind) {
+                    case INT:
+                        tag.setValue(String.valueOf((int) handle.invokeExact(exec)));
+                        break;
+                    case LONG:
+                        tag.setValue(String.valueOf((long) handle.invokeExact(exec)));
+                        break;
+                    case DOUBLE:
+                        tag.setValue(String.valueOf((double) handle.invokeExact(exec)));
+                        break;
+                    case FLOAT:
+                        tag.setValue(String.valueOf((float) handle.invokeExact(exec)));
+                        break;
+                    case BOOLEAN:
+                        tag.setValue(String.valueOf((boolean) handle.invokeExact(exec)));
+                        break;
+                    case BYTE:
+                        tag.setValue(String.valueOf((byte) handle.invokeExact(exec)));
+                        break;
+                    case CHAR:
+                        tag.setValue(String.valueOf((char) handle.invokeExact(exec)));
+                        break;
+                    case SHORT:
+                        tag.setValue(String.valueOf((short) handle.invokeExact(exec)));
+                        break;
+                    default:
+                        Object res = (Object) handle.invokeExact(exec);
+                        tag.setValue(res != null ? res.toString() : "");
+                        break;
+                }
+            } catch (Error er) {
+                throw er;
+            } catch (Throwable ex) {
+                Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+}
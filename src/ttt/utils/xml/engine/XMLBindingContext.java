@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.engine;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import ttt.utils.xml.document.XMLElement;
+import ttt.utils.xml.engine.annotations.Element;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+
+/**
+ * Contesto di collegamento creato una sola volta a partire dalle classi
+ * annotate con {@link Element}: associa il nome di ogni elemento alla sua
+ * classe e alle informazioni di collegamento (calcolate una sola volta per
+ * classe).<br>
+ * Il contesto è immutabile, perciò può essere condiviso tra più thread e
+ * riutilizzato da {@link XMLEngine}, {@link XMLWriteSupportEngine} e
+ * {@link ttt.utils.xml.io.XMLWriter} per documenti diversi, anche
+ * contemporaneamente.
+ *
+ * @author TTT
+ */
+public final class XMLBindingContext {
+
+    private final HashMap<String, ElementBinding> bindings = new HashMap<>();
+    private final HashMap<Class<?>, ElementBinding> class_bindings = new HashMap<>();
+    private final HashMap<String, Class<? extends IXMLElement>> names = new HashMap<>();
+    private final Map<String, Class<? extends IXMLElement>> classes = Collections.unmodifiableMap(names);
+
+    /**
+     * Contesto senza classi, utilizzato quando non viene indicato alcun
+     * contesto.
+     */
+    static final XMLBindingContext EMPTY = new XMLBindingContext();
+
+    private XMLBindingContext() {
+    }
+
+    /**
+     * Crea un nuovo contesto. Le classi senza l'annotazione {@link Element}
+     * vengono ignorate.
+     *
+     * @param classes Le classi che rappresentano gli elementi utilizzati nei
+     * documenti.
+     */
+    @SafeVarargs
+    public XMLBindingContext(Class<? extends XMLElement>... classes) {
+        for (Class<? extends XMLElement> cls : classes) {
+            register(cls);
+        }
+    }
+
+    /**
+     * Crea un nuovo contesto. Le classi senza l'annotazione {@link Element}
+     * vengono ignorate.
+     *
+     * @param classes Le classi che rappresentano gli elementi utilizzati nei
+     * documenti.
+     */
+    public XMLBindingContext(Collection<Class<? extends XMLElement>> classes) {
+        for (Class<? extends XMLElement> cls : classes) {
+            register(cls);
+        }
+    }
+
+    /**
+     * Aggiunge una classe al contesto: viene chiamato solo dai costruttori,
+     * dopo i quali il contesto non viene più modificato.
+     *
+     * @param cls La classe da aggiungere.
+     */
+    private void register(Class<? extends XMLElement> cls) {
+        ElementBinding binding = ElementBinding.of(cls);
+        Element elem_ann = binding.getAnnotation();
+        if (elem_ann != null) {
+            bindings.put(elem_ann.Name(), binding);
+            class_bindings.put(cls, binding);
+            names.put(elem_ann.Name(), cls);
+        }
+    }
+
+    /**
+     * Ritorna la classe associata al nome di un elemento.
+     *
+     * @param name Il nome dell'elemento.
+     * @return La classe oppure {@code null} se nessuna classe del contesto ha
+     * quel nome.
+     */
+    public Class<? extends IXMLElement> getElementClass(String name) {
+        return classes.get(name);
+    }
+
+    /**
+     * Ritorna le classi del contesto associate al nome dei loro elementi.
+     *
+     * @return La mappa non modificabile delle classi.
+     */
+    public Map<String, Class<? extends IXMLElement>> getElementClasses() {
+        return classes;
+    }
+
+    /**
+     * Ritorna le informazioni di collegamento di una classe, anche se non fa
+     * parte del contesto.
+     *
+     * @param c La classe.
+     * @return Le informazioni di collegamento.
+     */
+    ElementBinding getBinding(Class<?> c) {
+        ElementBinding binding = class_bindings.get(c);
+        return binding != null ? binding : ElementBinding.of(c);
+    }
+
+    /**
+     * Crea l'istanza che deve sostituire un elemento generico: un'istanza
+     * della classe associata al suo nome oppure un nuovo {@link XMLElement}.
+     *
+     * @param name Il nome dell'elemento da sostituire.
+     * @return La nuova istanza oppure {@code null} nel caso in cui non sia
+     * possibile crearla.
+     */
+    IXMLElement instantiate(String name) {
+        ElementBinding binding = bindings.get(name);
+        if (binding == null) {
+            return new XMLElement(name);
+        }
+        try {
+            return binding.newInstance();
+        } catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
+            Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+}
@@ -18,25 +18,18 @@ package ttt.utils.xml.engine;
 import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import ttt.utils.engines.enums.FieldType;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import ttt.utils.xml.document.XMLDocument;
 import ttt.utils.xml.document.XMLElement;
+import ttt.utils.xml.document.structure.StructureValidator;
+import ttt.utils.xml.document.structure.exception.InvalidXMLFormat;
 import ttt.utils.xml.engine.annotations.Element;
-import ttt.utils.engines.interfaces.EngineMethod;
 import ttt.utils.xml.engine.annotations.Tag;
-import ttt.utils.engines.enums.MethodType;
-import ttt.utils.engines.interfaces.EngineField;
-import ttt.utils.engines.utils.EngineUtils;
 import ttt.utils.xml.engine.interfaces.IXMLElement;
 import ttt.utils.xml.engine.interfaces.IXMLTag;
+import ttt.utils.xml.io.IXMLElementFactory;
 import ttt.utils.xml.io.XMLReader;
 
 /**
@@ -50,9 +43,15 @@ import ttt.utils.xml.io.XMLReader;
 public final class XMLEngine {
 
     private final XMLDocument document;
-    private final Class<? extends XMLElement>[] classes;
+    private final XMLBindingContext context;
 
-    private final HashMap<String, Class<? extends XMLElement>> availableElements = new HashMap<>();
+    /**
+     * Numero di default di elementi fratelli sotto il quale la conversione
+     * parallela non divide ulteriormente il lavoro.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+
+    private int parallel_threshold = DEFAULT_PARALLEL_THRESHOLD;
 
     /**
      * Uguale al comportamento di {@link XMLEngine#XMLEngine(ttt.utils.xml.document.XMLDocument, java.lang.Class...)
@@ -89,23 +88,112 @@ public final class XMLEngine {
      * xml.
      */
     public XMLEngine(XMLDocument document, Class<? extends XMLElement>... classes) {
+        this(document, new XMLBindingContext(classes));
+    }
+
+    /**
+     * Inizializza un nuovo XMLEngine che utilizza un contesto già creato, in
+     * modo da non dover ricalcolare le informazioni delle classi per ogni
+     * documento. Più engine possono condividere lo stesso contesto ed essere
+     * utilizzati contemporaneamente da thread diversi.
+     *
+     * @param document Nuovo documento che userà le classi del contesto.
+     * @param context Il contesto con le classi degli elementi.
+     */
+    public XMLEngine(XMLDocument document, XMLBindingContext context) {
         this.document = document;
-        this.classes = classes;
-        init();
+        this.context = context;
+    }
+
+    /**
+     * Legge un documento convertendo direttamente ogni elemento letto
+     * nell'istanza della classe specificata associata al suo nome (oppure in
+     * un {@link XMLElement} generico), senza creare il documento intermedio
+     * che verrebbe poi trasformato da {@link #morph(XMLDocument)}.<br>
+     * Gli attributi vengono aggiunti all'istanza appena creata, mentre il
+     * collegamento delle tags e i metodi di calcolo vengono eseguiti alla
+     * chiusura dell'elemento, quando tutti i suoi sotto-elementi sono già
+     * stati completati.<p>
+     * Il risultato non è identico a quello di {@link #morph(XMLDocument)}:
+     * <ul>
+     * <li>gli {@link XMLElement} generici (senza classe associata)
+     * mantengono il proprio valore, mentre {@link #morph(XMLDocument)} lo
+     * scarta;</li>
+     * <li>i commenti degli elementi e del documento vengono mantenuti,
+     * mentre {@link #morph(XMLDocument)} non li copia.</li>
+     * </ul>
+     * Le istanze delle classi specificate, le loro tags e i loro valori sono
+     * invece gli stessi.
+     *
+     * @param reader La classe Reader inizializzata per poter leggere il
+     * documento.
+     * @param classes Le classi che devono essere utilizzate per lo scambio.
+     * @return Il documento con le istanze delle classi specificate.
+     * @throws IOException Nel caso in cui il file non esiste.
+     */
+    @SafeVarargs
+    public static XMLDocument readDocument(XMLReader reader, Class<? extends XMLElement>... classes) throws IOException {
+        return readDocument(reader, new XMLBindingContext(classes));
     }
 
     /**
-     * Inizializza la lista di classi usate nel documento. Ogni classe deve
-     * implementare l'interfaccia {@link IXMLElement} ed essre annotata con
-     * {@link Element} per poter poi essere usata da questo engine
+     * Come {@link #readDocument(XMLReader, Class...)}, utilizzando le classi
+     * di un contesto già creato.
+     *
+     * @param reader La classe Reader inizializzata per poter leggere il
+     * documento.
+     * @param context Il contesto con le classi degli elementi.
+     * @return Il documento con le istanze delle classi del contesto.
+     * @throws IOException Nel caso in cui il file non esiste.
      */
-    private void init() {
-        for (Class cls : classes) {
-            Element elem_ann = getAnnotationFrom(cls);
-            if (elem_ann != null) {
-                availableElements.put(elem_ann.Name(), cls);
-            }
-        }
+    public static XMLDocument readDocument(XMLReader reader, XMLBindingContext context) throws IOException {
+        return reader.readDocument(new DirectBinder(context));
+    }
+
+    /**
+     * Come {@link #readDocument(XMLReader, Class...)}, verificando la
+     * struttura del documento durante la lettura: la lettura viene
+     * interrotta al primo elemento che non rispetta la struttura, senza
+     * creare e collegare il resto del documento.
+     *
+     * @param reader La classe Reader inizializzata per poter leggere il
+     * documento.
+     * @param validator Il validatore della struttura.
+     * @param classes Le classi che devono essere utilizzate per lo scambio.
+     * @return Il documento con le istanze delle classi specificate.
+     * @throws IOException Nel caso in cui il file non esiste.
+     * @throws InvalidXMLFormat Nel caso in cui il documento non rispetti la
+     * struttura.
+     */
+    @SafeVarargs
+    public static XMLDocument readDocument(XMLReader reader, StructureValidator validator, Class<? extends XMLElement>... classes) throws IOException, InvalidXMLFormat {
+        return readDocument(reader, new XMLBindingContext(classes), validator);
+    }
+
+    /**
+     * Come {@link #readDocument(XMLReader, StructureValidator, Class...)},
+     * utilizzando le classi di un contesto già creato.
+     *
+     * @param reader La classe Reader inizializzata per poter leggere il
+     * documento.
+     * @param context Il contesto con le classi degli elementi.
+     * @param validator Il validatore della struttura.
+     * @return Il documento con le istanze delle classi del contesto.
+     * @throws IOException Nel caso in cui il file non esiste.
+     * @throws InvalidXMLFormat Nel caso in cui il documento non rispetti la
+     * struttura.
+     */
+    public static XMLDocument readDocument(XMLReader reader, XMLBindingContext context, StructureValidator validator) throws IOException, InvalidXMLFormat {
+        return reader.readDocument(new DirectBinder(context), validator, context.getElementClasses());
+    }
+
+    /**
+     * Ritorna il contesto con le classi utilizzate da questo engine.
+     *
+     * @return Il contesto.
+     */
+    public XMLBindingContext getBindingContext() {
+        return context;
     }
 
     /**
@@ -138,24 +226,86 @@ public final class XMLEngine {
      * @param to Documento in cui salvare la nuova struttura
      */
     public void morph(XMLDocument to) {
-        document.getElements().forEach(to_transfer -> {
-            try {
-                Class<? extends XMLElement> to_instance = availableElements.get(to_transfer.getName());
-                Object newInstance;
-                if (to_instance != null) {
-                    Constructor constr = to_instance.getConstructor();
-                    newInstance = constr.newInstance();
-                } else {
-                    newInstance = new XMLElement(to_transfer.getName());
-                }
-                transfer(to_transfer, (IXMLElement) newInstance);
-                to.addSubElement((IXMLElement) newInstance);
-            } catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
+        document.forEachElement(to_transfer -> {
+            IXMLElement newInstance = instantiate(to_transfer.getName());
+            if (newInstance != null) {
+                transfer(to_transfer, newInstance);
+                to.addSubElement(newInstance);
             }
         });
     }
 
+    /**
+     * Come {@link #morph(XMLDocument)}, ma i sotto-alberi fratelli vengono
+     * convertiti in parallelo tramite il {@link ForkJoinPool#commonPool()}.
+     *
+     * @param to Documento in cui salvare la nuova struttura
+     * @see #morph(XMLDocument, ForkJoinPool)
+     */
+    public void parallelMorph(XMLDocument to) {
+        morph(to, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Come {@link #morph(XMLDocument)}, ma i sotto-alberi fratelli vengono
+     * convertiti in parallelo sul pool specificato: gli elementi con più
+     * sotto-elementi della soglia impostata con
+     * {@link #setParallelThreshold(int)} dividono i propri figli in gruppi
+     * convertiti da task separati.<br>
+     * I sotto-elementi vengono aggiunti nello stesso ordine del documento
+     * originale e i metodi di calcolo di un elemento vengono eseguiti solo
+     * dopo che tutti i suoi sotto-elementi sono stati convertiti. I metodi di
+     * calcolo di elementi diversi possono però essere eseguiti
+     * contemporaneamente, perciò non devono modificare dati condivisi.
+     *
+     * @param to Documento in cui salvare la nuova struttura
+     * @param pool Il pool su cui eseguire la conversione.
+     */
+    public void morph(XMLDocument to, ForkJoinPool pool) {
+        List<IXMLElement> elements = document.getElements();
+        IXMLElement[] morphed = new IXMLElement[elements.size()];
+        pool.invoke(new MorphTask(context, parallel_threshold, elements, morphed, 0, morphed.length));
+        for (IXMLElement element : morphed) {
+            if (element != null) {
+                to.addSubElement(element);
+            }
+        }
+    }
+
+    /**
+     * Imposta il numero di elementi fratelli sotto il quale la conversione
+     * parallela non divide ulteriormente il lavoro.
+     *
+     * @param parallel_threshold La nuova soglia.
+     */
+    public void setParallelThreshold(int parallel_threshold) {
+        if (parallel_threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive: " + parallel_threshold);
+        }
+        this.parallel_threshold = parallel_threshold;
+    }
+
+    /**
+     * Ritorna la soglia della conversione parallela.
+     *
+     * @return Il numero di elementi fratelli convertiti da un singolo task.
+     */
+    public int getParallelThreshold() {
+        return parallel_threshold;
+    }
+
+    /**
+     * Crea l'istanza che deve sostituire un elemento generico: un'istanza
+     * della classe associata al suo nome oppure un nuovo {@link XMLElement}.
+     *
+     * @param name Il nome dell'elemento da sostituire.
+     * @return La nuova istanza oppure {@code null} nel caso in cui non sia
+     * possibile crearla.
+     */
+    private IXMLElement instantiate(String name) {
+        return context.instantiate(name);
+    }
+
     /**
      * Trasferisce i valori di un generico {@link XMLElement} in uno nuovo, nel
      * caso rappresentato da una nuova classe.
@@ -164,85 +314,122 @@ public final class XMLEngine {
      * @param to L'elemento di destinzaione (può essere una nuova classe).
      */
     private void transfer(IXMLElement from, IXMLElement to) {
-        Class c = to.getClass();
-        Element main_ann = getAnnotationFrom(c);
-        ArrayList<Method> calc_methods = new ArrayList<>();
-        if (main_ann != null) {
-            if (main_ann.CanHaveValue()) {
-                to.setValue(from.getValue());
+        ElementBinding binding = context.getBinding(to.getClass());
+        binding.bind(from, to);
+        from.forEachTag(to::addTag);
+        from.forEachElement(to_transfer -> {
+            IXMLElement newInstance = instantiate(to_transfer.getName());
+            if (newInstance != null) {
+                transfer(to_transfer, newInstance);
+                to.addSubElement(newInstance);
             }
-            for (Method m : c.getDeclaredMethods()) {
-                EngineMethod meta = m.getAnnotation(EngineMethod.class);//Il metodo deve essre annotato con @EngineMethod
-                if (meta != null) {
-                    if (meta.MethodType() == MethodType.SET) {
-                        if (main_ann.CanHaveTags()) {
-                            Tag tag_annot = m.getAnnotation(Tag.class);
-                            if (tag_annot != null && m.getParameterCount() == 1) {
-                                Class<?> param1 = m.getParameterTypes()[0];
-                                if (param1.equals(tag_annot.ValueType())) {
-                                    IXMLTag effective_tag = from.getTag(tag_annot.Name());
-                                    try {
-                                        if (param1 == String.class) {
-                                            m.invoke(to, effective_tag != null ? effective_tag.getValue() : null);
-                                        } else if (EngineUtils.isPrimitive(param1) || EngineUtils.isBoxed(param1)) {
-                                            m.invoke(to, effective_tag != null ? EngineUtils.convertStringToPrimitive(effective_tag.getValue(), param1) : null);
-                                        }
-                                    } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                                        Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
-                                    }
-                                }
-                            }
-                        }
-                    } else if (meta.MethodType() == MethodType.CALC && m.getParameterCount() == 0) {
-                        calc_methods.add(m);
+        });
+        binding.calc(to);
+    }
+
+    /**
+     * Converte un intervallo di elementi fratelli, salvando ogni nuova istanza
+     * nella stessa posizione dell'elemento originale.
+     */
+    private static final class MorphTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final XMLBindingContext context;
+        private final int threshold;
+        private final List<IXMLElement> from;
+        private final IXMLElement[] to;
+        private final int start;
+        private final int end;
+
+        private MorphTask(XMLBindingContext context, int threshold, List<IXMLElement> from, IXMLElement[] to, int start, int end) {
+            this.context = context;
+            this.threshold = threshold;
+            this.from = from;
+            this.to = to;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= threshold) {
+                for (int i = start; i < end; i++) {
+                    IXMLElement to_transfer = from.get(i);
+                    IXMLElement newInstance = context.instantiate(to_transfer.getName());
+                    if (newInstance != null) {
+                        transfer(to_transfer, newInstance);
+                        to[i] = newInstance;
                     }
                 }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new MorphTask(context, threshold, from, to, start, middle), new MorphTask(context, threshold, from, to, middle, end));
             }
-            for (Field f : c.getDeclaredFields()) {
-                f.setAccessible(true);
-                EngineField meta = f.getAnnotation(EngineField.class);
-                if (meta != null && (meta.FieldType() == FieldType.READ_AND_WRITE || meta.FieldType() == FieldType.READ)) {
-                    if (main_ann.CanHaveTags()) {
-                        Tag tag_annot = f.getAnnotation(Tag.class);
-                        if (tag_annot != null) {
-                            try {
-                                IXMLTag effective_tag = from.getTag(tag_annot.Name());
-                                if (f.getType().equals(String.class)) {
-                                    f.set(to, effective_tag != null ? effective_tag.getValue() : null);
-                                } else if (EngineUtils.isPrimitive(f.getType()) || EngineUtils.isBoxed(f.getType())) {
-                                    f.set(to, effective_tag != null ? EngineUtils.convertStringToPrimitive(effective_tag.getValue(), f.getType()) : null);
-                                }
-                            } catch (IllegalArgumentException | IllegalAccessException ex) {
-                                Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
-                            }
-                        }
+        }
+
+        /**
+         * Converte gli elementi di un elemento generico nella sua nuova
+         * istanza, in parallelo se sono più della soglia impostata.
+         *
+         * @param from L'elemento da trasferire.
+         * @param to L'elemento di destinazione.
+         */
+        private void transfer(IXMLElement from, IXMLElement to) {
+            ElementBinding binding = context.getBinding(to.getClass());
+            binding.bind(from, to);
+            from.forEachTag(to::addTag);
+            List<IXMLElement> elements = from.getElements();
+            if (elements.size() > threshold) {
+                IXMLElement[] morphed = new IXMLElement[elements.size()];
+                new MorphTask(context, threshold, elements, morphed, 0, morphed.length).invoke();
+                for (IXMLElement element : morphed) {
+                    if (element != null) {
+                        to.addSubElement(element);
                     }
                 }
+            } else {
+                elements.forEach(to_transfer -> {
+                    IXMLElement newInstance = context.instantiate(to_transfer.getName());
+                    if (newInstance != null) {
+                        transfer(to_transfer, newInstance);
+                        to.addSubElement(newInstance);
+                    }
+                });
             }
+            binding.calc(to);
         }
-        from.getTags().forEach(tag -> to.addTag(tag));
-        from.getElements().forEach(to_transfer -> {
-            try {
-                Class<? extends XMLElement> to_instance = availableElements.get(to_transfer.getName());
-                Object newInstance;
-                if (to_instance != null) {
-                    Constructor constr = to_instance.getConstructor();
-                    newInstance = constr.newInstance();
-                } else {
-                    newInstance = new XMLElement(to_transfer.getName());
-                }
-                transfer(to_transfer, (IXMLElement) newInstance);
-                to.addSubElement((IXMLElement) newInstance);
-            } catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        });
-        calc_methods.forEach(method -> {
-            try {
-                method.invoke(to);
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
+    }
+
+    /**
+     * Crea e completa le istanze degli elementi durante la lettura del
+     * documento, per {@link #readDocument(XMLReader, XMLBindingContext)}.
+     * Il valore viene impostato anche negli elementi generici (vedi le
+     * differenze con {@link #morph(XMLDocument)} descritte in
+     * {@link #readDocument(XMLReader, Class...)}).
+     */
+    private static final class DirectBinder implements IXMLElementFactory {
+
+        private final XMLBindingContext context;
+
+        private DirectBinder(XMLBindingContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public IXMLElement createElement(String name) {
+            return context.instantiate(name);
+        }
+
+        @Override
+        public void completeElement(IXMLElement element, String value) {
+            ElementBinding binding = context.getBinding(element.getClass());
+            Element elem_ann = binding.getAnnotation();
+            if (elem_ann == null || elem_ann.CanHaveValue()) {
+                element.setValue(value);
             }
-        });
+            binding.bind(element, element);
+            binding.calc(element);
+        }
     }
 }
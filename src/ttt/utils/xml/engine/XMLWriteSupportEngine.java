@@ -15,21 +15,7 @@
  */
 package ttt.utils.xml.engine;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import ttt.utils.engines.enums.FieldType;
-import ttt.utils.engines.enums.MethodType;
-import ttt.utils.engines.interfaces.EngineField;
-import ttt.utils.engines.interfaces.EngineMethod;
-import ttt.utils.xml.document.XMLTag;
 import ttt.utils.xml.engine.annotations.Element;
-import ttt.utils.xml.engine.annotations.Tag;
 import ttt.utils.xml.engine.interfaces.IXMLElement;
 import ttt.utils.xml.engine.interfaces.IXMLTag;
 
@@ -39,11 +25,27 @@ import ttt.utils.xml.engine.interfaces.IXMLTag;
  */
 public class XMLWriteSupportEngine {
 
+    private static final XMLBindingContext DEFAULT_CONTEXT = XMLBindingContext.EMPTY;
+
     private final IXMLElement element;
-    private final HashMap<Class<? extends IXMLElement>, LinkedList<String>> writeable_tags = new HashMap<>();
+    private final XMLBindingContext context;
+    private Class<?> last_class;
+    private ElementBinding last_binding;
 
     public XMLWriteSupportEngine(IXMLElement element) {
+        this(element, DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Crea un nuovo engine di supporto alla scrittura che utilizza le
+     * informazioni delle classi di un contesto già creato.
+     *
+     * @param element L'elemento (o il documento) da scrivere.
+     * @param context Il contesto con le classi degli elementi.
+     */
+    public XMLWriteSupportEngine(IXMLElement element, XMLBindingContext context) {
         this.element = element;
+        this.context = context;
     }
 
     /**
@@ -51,80 +53,40 @@ public class XMLWriteSupportEngine {
      * cambiate devono essere applicate prima di poter essere scritte.
      */
     public void applyChanges() {
-        writeable_tags.clear();
         transferChanges(element);
     }
 
     private void transferChanges(IXMLElement exec) {
-        Class c = exec.getClass();
-        writeable_tags.putIfAbsent(c, new LinkedList<>());
-        Element main_ann = XMLEngine.getAnnotationFrom(c);
+        ElementBinding binding = getBinding(exec.getClass());
+        Element main_ann = binding.getAnnotation();
         if (main_ann != null && main_ann.CanHaveTags()) {
-            for (Method m : c.getDeclaredMethods()) {
-                EngineMethod meta = m.getAnnotation(EngineMethod.class);//Il metodo deve essre annotato con @EngineMethod
-                if (meta != null && meta.MethodType() == MethodType.GET) {
-                    Tag tag_annot = m.getAnnotation(Tag.class);
-                    if (tag_annot != null && m.getParameterCount() == 0) {
-                        try {
-                            IXMLTag effective_tag = exec.getTag(tag_annot.Name());
-                            if (effective_tag == null) {
-                                effective_tag = new XMLTag(tag_annot.Name());
-                                exec.addTag(effective_tag);
-                            }
-                            Object res = m.invoke(exec);
-                            effective_tag.setValue(res != null ? res.toString() : "");
-                        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                            Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
-                        }
-                    }
-                }
-            }
-            for (Field f : c.getDeclaredFields()) {
-                f.setAccessible(true);
-                EngineField meta = f.getAnnotation(EngineField.class);
-                if (meta != null && main_ann.CanHaveTags() && (meta.FieldType() == FieldType.READ_AND_WRITE || meta.FieldType() == FieldType.WRITE)) {
-                    Tag tag_annot = f.getAnnotation(Tag.class);
-                    if (tag_annot != null) {
-                        try {
-                            IXMLTag effective_tag = exec.getTag(tag_annot.Name());
-                            if (effective_tag == null) {
-                                effective_tag = new XMLTag(tag_annot.Name());
-                                exec.addTag(effective_tag);
-                            }
-                            writeable_tags.get(c).add(effective_tag.getName());
-                            Object res = f.get(exec);
-                            effective_tag.setValue(res != null ? res.toString() : "");
-                        } catch (IllegalArgumentException | IllegalAccessException ex) {
-                            Logger.getLogger(XMLEngine.class.getName()).log(Level.SEVERE, null, ex);
-                        }
-                    }
-                }
-            }
+            binding.applyChanges(exec);
         }
-        exec.getElements().forEach(to_apply -> {
-            transferChanges(to_apply);
-        });
+        exec.forEachElement(this::transferChanges);
     }
 
-    public static boolean doWriteSubElements(IXMLElement exec) {
-        Class c = exec.getClass();
-        Element main_ann = XMLEngine.getAnnotationFrom(c);
-        if (main_ann != null) {
-            return !main_ann.IgnoreSubElementsOnWrite();
+    /**
+     * Ritorna le informazioni di collegamento di una classe, ricordando
+     * l'ultima classe richiesta: le tags di uno stesso elemento vengono
+     * controllate una dopo l'altra.
+     *
+     * @param c La classe dell'elemento.
+     * @return Le informazioni di collegamento.
+     */
+    private ElementBinding getBinding(Class<?> c) {
+        if (c != last_class) {
+            last_binding = context.getBinding(c);
+            last_class = c;
         }
-        return false;
+        return last_binding;
+    }
+
+    public static boolean doWriteSubElements(IXMLElement exec) {
+        return ElementBinding.of(exec.getClass()).isWriteSubElements();
     }
 
     public boolean doWriteTag(IXMLElement exec, IXMLTag tag) {
-        Class c = exec.getClass();
-        Element main_ann = XMLEngine.getAnnotationFrom(c);
-        if (main_ann != null) {
-            LinkedList<String> get = writeable_tags.get(c);
-            if (get != null) {
-                return get.contains(tag.getName());
-            }
-        }
-        return false;
+        return getBinding(exec.getClass()).isWriteableTag(tag.getName());
     }
 
 }
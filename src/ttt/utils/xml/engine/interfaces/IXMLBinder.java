@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.engine.interfaces;
+
+/**
+ * Interfaccia implementata dalle classi generate a tempo di compilazione da
+ * {@code ttt.utils.xml.engine.processor.XMLBinderProcessor} per ogni classe
+ * annotata con {@link ttt.utils.xml.engine.annotations.Element}.<br>
+ * Un binder esegue gli stessi passaggi che l'engine eseguirebbe tramite
+ * reflection, ma con chiamate dirette ai metodi e alle variabili
+ * dell'elemento.
+ *
+ * @author TTT
+ * @param <T> La classe dell'elemento.
+ */
+public interface IXMLBinder<T extends IXMLElement> {
+
+    /**
+     * Il suffisso dei nomi delle classi generate: il binder della classe
+     * {@code pkg.Esterna$Interna} si chiama {@code pkg.Esterna_Interna_XMLBinder}.
+     */
+    public static final String BINDER_SUFFIX = "_XMLBinder";
+
+    /**
+     * Crea una nuova istanza dell'elemento.
+     *
+     * @return La nuova istanza.
+     */
+    public T newInstance();
+
+    /**
+     * Trasferisce il valore e le tags di un elemento nell'elemento di
+     * destinazione.
+     *
+     * @param from L'elemento da cui leggere i valori.
+     * @param to L'elemento di destinazione.
+     */
+    public void bind(IXMLElement from, T to);
+
+    /**
+     * Esegue i metodi di calcolo dell'elemento.
+     *
+     * @param to L'elemento su cui eseguire i metodi.
+     */
+    public void calc(T to);
+
+    /**
+     * Aggiorna le tags dell'elemento con i valori correnti delle variabili e
+     * dei metodi collegati, prima della scrittura.
+     *
+     * @param exec L'elemento da aggiornare.
+     */
+    public void applyChanges(T exec);
+}
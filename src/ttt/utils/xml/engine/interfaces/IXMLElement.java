@@ -15,7 +15,10 @@
  */
 package ttt.utils.xml.engine.interfaces;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * L'interfaccia che fornisce i metodi necessari per poter gestire una classe
@@ -117,6 +120,17 @@ public interface IXMLElement {
      */
     public List<IXMLTag> getTags();
 
+    /**
+     * Esegue l'azione specificata per ogni tag dell'elemento. Le
+     * implementazioni possono evitare di creare una lista intermedia;
+     * l'implementazione di default scorre {@link #getTags()}.
+     *
+     * @param action L'azione da eseguire.
+     */
+    public default void forEachTag(Consumer<? super IXMLTag> action) {
+        getTags().forEach(action);
+    }
+
     /**
      * Ritorna la lista di elementi contenuti nell'elemento corrente.
      *
@@ -124,6 +138,17 @@ public interface IXMLElement {
      */
     public List<IXMLElement> getElements();
 
+    /**
+     * Esegue l'azione specificata per ogni sotto-elemento, nell'ordine in cui
+     * sono contenuti nell'elemento corrente. L'implementazione di default
+     * scorre {@link #getElements()}.
+     *
+     * @param action L'azione da eseguire.
+     */
+    public default void forEachElement(Consumer<? super IXMLElement> action) {
+        getElements().forEach(action);
+    }
+
     /**
      * Ritorna la prima occorrenza (se presente, altrimenti {@code null}) di
      * un'elemento con il nome specificato.
@@ -133,6 +158,24 @@ public interface IXMLElement {
      */
     public IXMLElement getFirstElement(String name);
 
+    /**
+     * Ritorna tutti i sotto-elementi con il nome specificato, nello stesso
+     * ordine in cui sono contenuti nell'elemento corrente.<br>
+     * L'implementazione di default scorre {@link #getElements()}.
+     *
+     * @param name Il nome degli elementi da cercare.
+     * @return Lista (non modificabile) di elementi, vuota se non ce ne sono.
+     */
+    public default List<IXMLElement> getElements(String name) {
+        ArrayList<IXMLElement> found = new ArrayList<>();
+        for (IXMLElement element : getElements()) {
+            if (element.getName().equals(name)) {
+                found.add(element);
+            }
+        }
+        return Collections.unmodifiableList(found);
+    }
+
     /**
      * Ritrorna se l'elemento è stato chiuso.
      *
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+/**
+ * Permette di leggere gli attributi di un elemento durante la lettura tramite
+ * {@link IXMLHandler}, senza creare nessun oggetto
+ * {@link ttt.utils.xml.engine.interfaces.IXMLTag}.<br>
+ * Gli attributi sono validi solo durante la chiamata di
+ * {@link IXMLHandler#onStart(java.lang.String, IXMLAttributes)}.
+ *
+ * @author TTT
+ */
+public interface IXMLAttributes {
+
+    /**
+     * Ritorna il numero di attributi dell'elemento.
+     *
+     * @return Il numero di attributi.
+     */
+    public int getCount();
+
+    /**
+     * Ritorna il nome di un attributo.
+     *
+     * @param index La posizione dell'attributo.
+     * @return Il nome dell'attributo.
+     */
+    public String getName(int index);
+
+    /**
+     * Ritorna il valore di un attributo.
+     *
+     * @param index La posizione dell'attributo.
+     * @return Il valore dell'attributo.
+     */
+    public String getValue(int index);
+
+    /**
+     * Ritorna il valore di un attributo dato il suo nome.
+     *
+     * @param name Il nome dell'attributo.
+     * @return Il valore dell'attributo oppure {@code null} se non presente.
+     */
+    public String getValue(String name);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+
+/**
+ * Crea gli elementi durante la lettura di un documento con
+ * {@link XMLReader#readDocument(IXMLElementFactory)}, permettendo di
+ * costruire direttamente le istanze finali senza passare da un documento
+ * intermedio.
+ *
+ * @author TTT
+ */
+public interface IXMLElementFactory {
+
+    /**
+     * Crea l'elemento corrispondente ad un tag appena aperto. Gli attributi
+     * vengono aggiunti all'elemento subito dopo la sua creazione.
+     *
+     * @param name Il nome dell'elemento.
+     * @return Il nuovo elemento oppure {@code null} per ignorare l'elemento e
+     * tutti i suoi sotto-elementi.
+     */
+    public IXMLElement createElement(String name);
+
+    /**
+     * Completa un elemento alla chiusura del suo tag, quando tutti i suoi
+     * sotto-elementi sono già stati completati. Dopo questa chiamata
+     * l'elemento viene aggiunto all'elemento padre.
+     *
+     * @param element L'elemento da completare.
+     * @param value Il valore letto per l'elemento oppure {@code null}.
+     */
+    public void completeElement(IXMLElement element, String value);
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+/**
+ * Riceve gli eventi della lettura di un documento tramite
+ * {@link XMLReader#parse(IXMLHandler)}, senza che venga creato nessun
+ * elemento: è utile quando serve solo contare o aggregare alcuni valori del
+ * documento.
+ *
+ * @author TTT
+ */
+public interface IXMLHandler {
+
+    /**
+     * Chiamato all'apertura di un elemento.
+     *
+     * @param name Il nome dell'elemento.
+     * @param attributes Gli attributi dell'elemento, validi solo durante
+     * questa chiamata.
+     */
+    public void onStart(String name, IXMLAttributes attributes);
+
+    /**
+     * Chiamato per ogni porzione di testo all'interno di un elemento (compresi
+     * gli spazi tra un elemento e l'altro). L'array è condiviso con il parser
+     * ed è valido solo durante questa chiamata.
+     *
+     * @param text L'array che contiene il testo.
+     * @param start La posizione del primo carattere.
+     * @param length Il numero di caratteri.
+     */
+    public void onText(char[] text, int start, int length);
+
+    /**
+     * Chiamato alla chiusura di un elemento.
+     *
+     * @param name Il nome dell'elemento.
+     */
+    public void onEnd(String name);
+
+    /**
+     * Chiamato per ogni commento del documento.
+     *
+     * @param comment Il testo del commento.
+     */
+    public void onComment(String comment);
+}
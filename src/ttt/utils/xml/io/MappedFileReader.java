@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader che legge un file mappandolo in memoria tramite
+ * {@link FileChannel#map(java.nio.channels.FileChannel.MapMode, long, long)} e
+ * decodificandolo in UTF-8 a blocchi della dimensione specificata.<br>
+ * I file più grandi di {@link #MAX_WINDOW} byte vengono mappati a finestre
+ * successive.
+ *
+ * @author TTT
+ */
+final class MappedFileReader extends Reader {
+
+    /**
+     * Dimensione massima di una singola finestra mappata.
+     */
+    static final long MAX_WINDOW = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final CharBuffer chars;
+    private MappedByteBuffer window;
+    private long window_start;
+    private boolean eof = false;
+
+    /**
+     * Apre e mappa il file specificato.
+     *
+     * @param file Il file da leggere.
+     * @param buffer_size La quantità di caratteri decodificati per blocco.
+     * @throws IOException Nel caso in cui non sia possibile aprire il file.
+     */
+    MappedFileReader(File file, int buffer_size) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            chars = CharBuffer.allocate(buffer_size);
+            chars.flip();
+            map(0);
+            if (fill() && chars.get(chars.position()) == '\uFEFF') {
+                chars.get();//BOM UTF-8
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        window_start = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAX_WINDOW, size - start));
+    }
+
+    /**
+     * Decodifica il prossimo blocco di caratteri.
+     *
+     * @return {@code true} se sono disponibili dei caratteri.
+     * @throws CharacterCodingException Nel caso in cui il file non sia
+     * codificato in UTF-8.
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return chars.hasRemaining();
+        }
+        chars.compact();
+        try {
+            while (true) {
+                boolean last = window_start + window.limit() >= size;
+                CoderResult result = decoder.decode(window, chars, last);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (result.isOverflow()) {
+                    break;
+                }
+                if (last) {
+                    decoder.flush(chars);
+                    eof = true;
+                    break;
+                }
+                //Eventuali byte di un carattere non completo vengono rimappati nella finestra successiva
+                map(window_start + window.position());
+            }
+        } finally {
+            chars.flip();
+        }
+        return chars.hasRemaining();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, chars.remaining());
+        chars.get(cbuf, off, n);
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
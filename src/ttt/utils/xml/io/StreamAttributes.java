@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Espone gli attributi dell'elemento corrente di uno {@link XMLStreamReader}
+ * come {@link IXMLAttributes}. Viene creata una sola istanza per ogni
+ * lettura, che legge sempre gli attributi dell'evento corrente.
+ *
+ * @author TTT
+ */
+final class StreamAttributes implements IXMLAttributes {
+
+    private final XMLStreamReader xmlsr;
+
+    StreamAttributes(XMLStreamReader xmlsr) {
+        this.xmlsr = xmlsr;
+    }
+
+    @Override
+    public int getCount() {
+        return xmlsr.getAttributeCount();
+    }
+
+    @Override
+    public String getName(int index) {
+        return xmlsr.getAttributeLocalName(index);
+    }
+
+    @Override
+    public String getValue(int index) {
+        return xmlsr.getAttributeValue(index);
+    }
+
+    @Override
+    public String getValue(String name) {
+        for (int i = 0; i < xmlsr.getAttributeCount(); i++) {
+            if (name.equals(xmlsr.getAttributeLocalName(i))) {
+                return xmlsr.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.util.ArrayDeque;
+import ttt.utils.xml.document.XMLComment;
+import ttt.utils.xml.document.XMLElement;
+import ttt.utils.xml.document.XMLTag;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+
+/**
+ * Costruisce l'albero di {@link XMLElement} a partire dagli eventi di
+ * lettura.<br>
+ * Gli elementi aperti vengono mantenuti in una pila: ogni evento lavora solo
+ * sulla cima della pila, perciò il costo per evento non dipende dalla
+ * profondità del documento. Gli elementi di primo livello vengono aggiunti al
+ * contenitore (se presente) appena aperti.
+ *
+ * @author TTT
+ */
+final class XMLDocumentBuilder implements IXMLHandler {
+
+    private final IXMLElement container;
+    private final boolean interning = XMLStreamFactories.isInterning();
+    private final ArrayDeque<IXMLElement> open_elements = new ArrayDeque<>();
+    private IXMLElement last_closed;
+
+    /**
+     * Crea un nuovo costruttore.
+     *
+     * @param container L'elemento (ad esempio il documento) in cui salvare gli
+     * elementi di primo livello e i relativi commenti. Può essere
+     * {@code null}.
+     */
+    XMLDocumentBuilder(IXMLElement container) {
+        this.container = container;
+    }
+
+    @Override
+    public void onStart(String name, IXMLAttributes attributes) {
+        XMLElement element = new XMLElement(interning ? name.intern() : name);
+        for (int i = 0; i < attributes.getCount(); i++) {
+            String tag_name = attributes.getName(i);
+            XMLTag xmlTag = new XMLTag(interning ? tag_name.intern() : tag_name);
+            xmlTag.setValue(attributes.getValue(i));
+            element.addTag(xmlTag);
+        }
+        IXMLElement parent = open_elements.isEmpty() ? container : open_elements.peek();
+        if (parent != null) {
+            parent.addSubElement(element);
+        }
+        open_elements.push(element);
+    }
+
+    @Override
+    public void onText(char[] text, int start, int length) {
+        if (!open_elements.isEmpty() && !isBlank(text, start, length)) {
+            open_elements.peek().setValue(new String(text, start, length));
+        }
+    }
+
+    @Override
+    public void onEnd(String name) {
+        last_closed = open_elements.pop();
+        last_closed.close();
+    }
+
+    @Override
+    public void onComment(String comment) {
+        IXMLElement parent = open_elements.isEmpty() ? container : open_elements.peek();
+        if (parent != null) {
+            parent.addComment(new XMLComment(comment));
+        }
+    }
+
+    /**
+     * Ritorna l'ultimo elemento chiuso e ne rimuove il riferimento dal
+     * costruttore, così che l'elemento non resti in memoria dopo essere stato
+     * consegnato al chiamante.
+     *
+     * @return L'ultimo elemento chiuso oppure {@code null}.
+     */
+    IXMLElement takeLastClosed() {
+        IXMLElement element = last_closed;
+        last_closed = null;
+        return element;
+    }
+
+    /**
+     * Ritorna se il testo è composto solo da spazi (con lo stesso criterio di
+     * {@link String#trim()}).
+     *
+     * @param text L'array che contiene il testo.
+     * @param start La posizione del primo carattere.
+     * @param length Il numero di caratteri.
+     * @return {@code true} se il testo è vuoto o composto solo da spazi.
+     */
+    static boolean isBlank(char[] text, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            if (text[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.ResourceBundle;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+
+/**
+ * Iteratore che legge un documento XML in modalità <i>pull</i>, restituendo
+ * uno alla volta i sotto-alberi degli elementi che si trovano ad una certa
+ * profondità.<br>
+ * Viene creato tramite {@link XMLReader#iterateElements(int)} e deve essere
+ * chiuso al termine dell'utilizzo.
+ *
+ * @author TTT
+ */
+public class XMLElementIterator implements Iterator<IXMLElement>, AutoCloseable {
+
+    private static final ResourceBundle read_errors = ResourceBundle.getBundle("ttt/utils/resources/i18n/xml/read_errors");
+
+    private final XMLStreamReader xmlsr;
+    private final Closeable owned_stream;
+    private final int target_depth;
+    private final XMLDocumentBuilder builder = new XMLDocumentBuilder(null);
+    private final StreamAttributes attributes;
+    private int depth = 0;
+    private IXMLElement next;
+    private boolean closed = false;
+
+    /**
+     * Crea un nuovo iteratore.
+     *
+     * @param xmlsr Lo stream di lettura XML.
+     * @param owned_stream Lo stream da chiudere insieme all'iteratore (può
+     * essere {@code null}).
+     * @param target_depth La profondità degli elementi da restituire.
+     */
+    XMLElementIterator(XMLStreamReader xmlsr, Closeable owned_stream, int target_depth) {
+        this.xmlsr = xmlsr;
+        this.owned_stream = owned_stream;
+        this.target_depth = target_depth;
+        this.attributes = new StreamAttributes(xmlsr);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed) {
+            try {
+                next = readNext();
+            } catch (XMLStreamException ex) {
+                close();
+                throw new UncheckedIOException(new IOException(read_errors.getString("not_found_or_incorrect"), ex));
+            }
+            if (next == null) {
+                close();
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public IXMLElement next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        IXMLElement current = next;
+        next = null;
+        return current;
+    }
+
+    /**
+     * Avanza nello stream fino alla chiusura del prossimo elemento alla
+     * profondità richiesta.
+     *
+     * @return L'elemento completo oppure {@code null} se il documento è
+     * terminato.
+     * @throws XMLStreamException Nel caso in cui il documento non sia
+     * formattato correttamente.
+     */
+    private IXMLElement readNext() throws XMLStreamException {
+        while (xmlsr.hasNext()) {
+            int event = xmlsr.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+            if (depth >= target_depth) {
+                XMLReader.dispatch(xmlsr, builder, attributes);
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT && depth == target_depth) {
+                return builder.takeLastClosed();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chiude lo stream di lettura (e lo stream del file se aperto dal
+     * {@link XMLReader}).
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                xmlsr.close();
+                if (owned_stream != null) {
+                    owned_stream.close();
+                }
+            } catch (XMLStreamException | IOException ex) {
+                throw new UncheckedIOException(new IOException(ex));
+            }
+        }
+    }
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.ResourceBundle;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import ttt.utils.xml.document.XMLComment;
+import ttt.utils.xml.document.XMLElement;
+import ttt.utils.xml.document.XMLTag;
+
+/**
+ * Indice strutturale di un file XML utilizzato da {@link XMLLazyDocument}.<br>
+ * Il file viene scansionato una sola volta byte per byte (deve essere
+ * codificato in UTF-8 o ASCII), senza decodificare attributi e testo: per
+ * ogni elemento vengono salvati in array paralleli il nome, la profondità, i
+ * collegamenti con padre, primo figlio e fratello successivo e le posizioni
+ * (in byte) di inizio e fine.<br>
+ * Il contenuto di un elemento (attributi, testo e commenti) viene letto solo
+ * quando richiesto: si leggono dal file le porzioni dell'elemento che non
+ * appartengono ai suoi figli, perciò il costo non dipende dalla dimensione del
+ * sotto-albero.
+ *
+ * @author TTT
+ */
+final class XMLIndex implements Closeable {
+
+    private static final ResourceBundle read_errors = ResourceBundle.getBundle("ttt/utils/resources/i18n/xml/read_errors");
+    /**
+     * Sostituisce ogni sotto-elemento nei frammenti, in modo che il testo
+     * prima e dopo il sotto-elemento resti separato come nella lettura
+     * completa.
+     */
+    private static final byte[] PLACEHOLDER = {'<', 'i', '/', '>'};
+
+    private final FileChannel fc;
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<long[]> comments = new ArrayList<>();
+    private int[] name_ids = new int[1024];
+    private int[] depths = new int[1024];
+    private int[] parents = new int[1024];
+    private int[] first_children = new int[1024];
+    private int[] next_siblings = new int[1024];
+    private long[] starts = new long[1024];
+    private long[] ends = new long[1024];
+    private int count = 0;
+    private int first_top = -1;
+
+    private XMLIndex(FileChannel fc) {
+        this.fc = fc;
+    }
+
+    /**
+     * Crea l'indice di un file.
+     *
+     * @param file Il file da indicizzare.
+     * @param buffer_size La dimensione del buffer di lettura.
+     * @return L'indice, che mantiene il file aperto fino alla sua chiusura.
+     * @throws IOException Nel caso in cui il file non esiste o non è
+     * formattato correttamente.
+     */
+    static XMLIndex build(File file, int buffer_size) throws IOException {
+        FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            XMLIndex index = new XMLIndex(fc);
+            index.scan(new Cursor(fc, buffer_size));
+            return index;
+        } catch (IOException | RuntimeException ex) {
+            fc.close();
+            throw ex;
+        }
+    }
+
+    private void scan(Cursor c) throws IOException {
+        HashMap<String, Integer> dictionary = new HashMap<>();
+        byte[] name = new byte[64];
+        int[] open = new int[64];
+        int[] last_children = new int[64];
+        int depth = 0;
+        int last_top = -1;
+        int b;
+        while ((b = c.next()) >= 0) {
+            if (b != '<') {
+                continue;
+            }
+            long tag_start = c.position() - 1;
+            b = c.next();
+            if (b == '?') {
+                c.skipPast("?>");
+            } else if (b == '!') {
+                b = c.next();
+                if (b == '-') {
+                    c.next();
+                    long text_start = c.position();
+                    c.skipPast("-->");
+                    if (depth == 0) {
+                        comments.add(new long[]{text_start, c.position() - 3});
+                    }
+                } else if (b == '[') {
+                    c.skipPast("]]>");
+                } else {
+                    c.skipDeclaration();
+                }
+            } else if (b == '/') {
+                c.skipPast(">");
+                if (depth == 0) {
+                    throw malformed(tag_start);
+                }
+                ends[open[--depth]] = c.position();
+            } else if (b >= 0) {
+                int length = 0;
+                while (b >= 0 && b != '>' && b != '/' && b > ' ') {
+                    if (length == name.length) {
+                        name = Arrays.copyOf(name, length * 2);
+                    }
+                    name[length++] = (byte) b;
+                    b = c.next();
+                }
+                int last = b;
+                while (b >= 0 && b != '>') {
+                    if (b == '"' || b == '\'') {
+                        c.skipPast(b == '"' ? "\"" : "'");
+                    }
+                    if (b > ' ') {
+                        last = b;
+                    }
+                    b = c.next();
+                }
+                if (b < 0 || length == 0) {
+                    throw malformed(tag_start);
+                }
+                int id = add(nameId(dictionary, name, length), depth, depth > 0 ? open[depth - 1] : -1, tag_start);
+                if (depth > 0) {
+                    if (last_children[depth - 1] < 0) {
+                        first_children[open[depth - 1]] = id;
+                    } else {
+                        next_siblings[last_children[depth - 1]] = id;
+                    }
+                    last_children[depth - 1] = id;
+                } else {
+                    if (last_top < 0) {
+                        first_top = id;
+                    } else {
+                        next_siblings[last_top] = id;
+                    }
+                    last_top = id;
+                }
+                if (last == '/') {
+                    ends[id] = c.position();
+                } else {
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                        last_children = Arrays.copyOf(last_children, depth * 2);
+                    }
+                    open[depth] = id;
+                    last_children[depth] = -1;
+                    depth++;
+                }
+            }
+        }
+        if (depth != 0) {
+            throw malformed(c.position());
+        }
+    }
+
+    private IOException malformed(long position) {
+        return new IOException(read_errors.getString("not_found_or_incorrect") + " (" + position + ")");
+    }
+
+    private int nameId(HashMap<String, Integer> dictionary, byte[] name, int length) {
+        String qname = new String(name, 0, length, StandardCharsets.UTF_8);
+        Integer id = dictionary.get(qname);
+        if (id == null) {
+            id = names.size();
+            dictionary.put(qname, id);
+            names.add(localName(qname).intern());
+        }
+        return id;
+    }
+
+    private static String localName(String qname) {
+        int colon = qname.indexOf(':');
+        return colon >= 0 ? qname.substring(colon + 1) : qname;
+    }
+
+    private int add(int name_id, int depth, int parent, long start) {
+        if (count == starts.length) {
+            int size = count * 2;
+            name_ids = Arrays.copyOf(name_ids, size);
+            depths = Arrays.copyOf(depths, size);
+            parents = Arrays.copyOf(parents, size);
+            first_children = Arrays.copyOf(first_children, size);
+            next_siblings = Arrays.copyOf(next_siblings, size);
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+        }
+        name_ids[count] = name_id;
+        depths[count] = depth;
+        parents[count] = parent;
+        first_children[count] = -1;
+        next_siblings[count] = -1;
+        starts[count] = start;
+        return count++;
+    }
+
+    /**
+     * Ritorna il numero di elementi indicizzati.
+     *
+     * @return Il numero di elementi.
+     */
+    int size() {
+        return count;
+    }
+
+    int getFirstTopElement() {
+        return first_top;
+    }
+
+    String getName(int id) {
+        return names.get(name_ids[id]);
+    }
+
+    int getDepth(int id) {
+        return depths[id];
+    }
+
+    int getParent(int id) {
+        return parents[id];
+    }
+
+    int getFirstChild(int id) {
+        return first_children[id];
+    }
+
+    int getNextSibling(int id) {
+        return next_siblings[id];
+    }
+
+    long getStart(int id) {
+        return starts[id];
+    }
+
+    long getEnd(int id) {
+        return ends[id];
+    }
+
+    /**
+     * Legge i commenti che si trovano fuori dall'elemento radice.
+     *
+     * @return I testi dei commenti.
+     * @throws IOException Nel caso in cui non sia possibile leggere il file.
+     */
+    ArrayList<String> readTopComments() throws IOException {
+        ArrayList<String> texts = new ArrayList<>();
+        for (long[] comment : comments) {
+            byte[] bytes = new byte[(int) (comment[1] - comment[0])];
+            read(bytes, 0, comment[0], comment[1]);
+            texts.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return texts;
+    }
+
+    /**
+     * Legge il contenuto di un elemento: attributi, valore e commenti. I
+     * sotto-elementi non vengono letti.
+     *
+     * @param id L'elemento da leggere.
+     * @return Un nuovo {@link XMLElement} con il contenuto dell'elemento, già
+     * chiuso e senza sotto-elementi.
+     * @throws IOException Nel caso in cui non sia possibile leggere il file o
+     * il frammento non sia formattato correttamente.
+     */
+    XMLElement readContent(int id) throws IOException {
+        long length = ends[id] - starts[id];
+        for (int child = first_children[id]; child >= 0; child = next_siblings[child]) {
+            length -= ends[child] - starts[child] - PLACEHOLDER.length;
+        }
+        byte[] fragment = new byte[(int) length];
+        int offset = 0;
+        long segment = starts[id];
+        for (int child = first_children[id]; child >= 0; child = next_siblings[child]) {
+            offset = read(fragment, offset, segment, starts[child]);
+            System.arraycopy(PLACEHOLDER, 0, fragment, offset, PLACEHOLDER.length);
+            offset += PLACEHOLDER.length;
+            segment = ends[child];
+        }
+        read(fragment, offset, segment, ends[id]);
+        XMLElement element = new XMLElement(getName(id));
+        boolean interning = XMLStreamFactories.isInterning();
+        try {
+            XMLStreamReader xmlsr = XMLStreamFactories.getFragmentInputFactory().createXMLStreamReader(new ByteArrayInputStream(fragment), "UTF-8");
+            try {
+                int depth = 0;
+                while (xmlsr.hasNext()) {
+                    int event = xmlsr.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if (++depth > 1) {
+                            continue;
+                        }
+                        for (int i = 0; i < xmlsr.getAttributeCount(); i++) {
+                            String prefix = xmlsr.getAttributePrefix(i);
+                            String qname = prefix == null || prefix.isEmpty()
+                                    ? xmlsr.getAttributeLocalName(i) : prefix + ':' + xmlsr.getAttributeLocalName(i);
+                            if (!qname.equals("xmlns") && !qname.startsWith("xmlns:")) {
+                                String tag_name = localName(qname);
+                                XMLTag xmlTag = new XMLTag(interning ? tag_name.intern() : tag_name);
+                                xmlTag.setValue(xmlsr.getAttributeValue(i));
+                                element.addTag(xmlTag);
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                    } else if (depth == 1 && event == XMLStreamConstants.COMMENT) {
+                        element.addComment(new XMLComment(xmlsr.getText()));
+                    } else if (depth == 1 && event == XMLStreamConstants.CHARACTERS && xmlsr.getText().trim().length() > 0) {
+                        element.setValue(xmlsr.getText());
+                    }
+                }
+            } finally {
+                xmlsr.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException(read_errors.getString("not_found_or_incorrect"), ex);
+        }
+        element.close();
+        return element;
+    }
+
+    private int read(byte[] to, int offset, long from, long until) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(to, offset, (int) (until - from));
+        long position = from;
+        while (buffer.hasRemaining()) {
+            int read = fc.read(buffer, position);
+            if (read < 0) {
+                throw new IOException(read_errors.getString("not_found_or_incorrect"));
+            }
+            position += read;
+        }
+        return buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        fc.close();
+    }
+
+    /**
+     * Legge un file un byte alla volta tramite un buffer, tenendo traccia
+     * della posizione assoluta.
+     */
+    private static final class Cursor {
+
+        private final FileChannel fc;
+        private final byte[] buffer;
+        private final ByteBuffer wrapper;
+        private int index = 0;
+        private int limit = 0;
+        private long position = 0;
+
+        private Cursor(FileChannel fc, int buffer_size) {
+            this.fc = fc;
+            this.buffer = new byte[buffer_size];
+            this.wrapper = ByteBuffer.wrap(buffer);
+        }
+
+        /**
+         * Ritorna il prossimo byte (tra 0 e 255) oppure -1 alla fine del
+         * file.
+         */
+        private int next() throws IOException {
+            if (index == limit) {
+                wrapper.clear();
+                int read;
+                do {
+                    read = fc.read(wrapper);
+                } while (read == 0);
+                if (read < 0) {
+                    return -1;
+                }
+                index = 0;
+                limit = read;
+            }
+            position++;
+            return buffer[index++] & 0xFF;
+        }
+
+        /**
+         * Ritorna la posizione del byte successivo all'ultimo letto.
+         */
+        private long position() {
+            return position;
+        }
+
+        /**
+         * Avanza fino alla fine della sequenza specificata (ASCII).
+         */
+        private void skipPast(String end) throws IOException {
+            int matched = 0;
+            int b;
+            while ((b = next()) >= 0) {
+                if (b == end.charAt(matched)) {
+                    if (++matched == end.length()) {
+                        return;
+                    }
+                } else if (b == end.charAt(0)) {
+                    //Le sequenze cercate iniziano con caratteri ripetuti ("-->", "]]>", "?>")
+                    matched = matched > 0 && end.charAt(matched - 1) == b ? matched : 1;
+                } else {
+                    matched = 0;
+                }
+            }
+            throw new IOException(read_errors.getString("not_found_or_incorrect"));
+        }
+
+        /**
+         * Avanza fino alla fine di una dichiarazione ({@code <!DOCTYPE ...>}),
+         * compresa l'eventuale sezione interna tra parentesi quadre.
+         */
+        private void skipDeclaration() throws IOException {
+            int brackets = 0;
+            int b;
+            while ((b = next()) >= 0) {
+                if (b == '"' || b == '\'') {
+                    skipPast(b == '"' ? "\"" : "'");
+                } else if (b == '[') {
+                    brackets++;
+                } else if (b == ']') {
+                    brackets--;
+                } else if (b == '>' && brackets <= 0) {
+                    return;
+                }
+            }
+            throw new IOException(read_errors.getString("not_found_or_incorrect"));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.io.File;
+import java.io.IOException;
+import ttt.utils.xml.document.XMLComment;
+import ttt.utils.xml.document.XMLDocument;
+
+/**
+ * Documento letto tramite {@link XMLReader#readLazyDocument()}: all'apertura
+ * viene creato solo un indice strutturale del file (nome, profondità e
+ * posizioni di ogni elemento), mentre il contenuto di ogni elemento viene
+ * letto solo al primo accesso (vedi {@link XMLLazyElement}).<br>
+ * La memoria occupata dipende quindi solo dal numero di elementi e dagli
+ * elementi effettivamente utilizzati. Il file rimane aperto fino alla
+ * chiusura del documento tramite {@link #closeFile()}: dopo la chiusura non è più
+ * possibile leggere gli elementi non ancora caricati.
+ *
+ * @author TTT
+ */
+public class XMLLazyDocument extends XMLDocument {
+
+    private final XMLIndex index;
+
+    XMLLazyDocument(File file, XMLIndex index) throws IOException {
+        super(file);
+        this.index = index;
+        for (String comment : index.readTopComments()) {
+            addComment(new XMLComment(comment));
+        }
+        for (int id = index.getFirstTopElement(); id >= 0; id = index.getNextSibling(id)) {
+            addSubElement(new XMLLazyElement(index, id));
+        }
+    }
+
+    /**
+     * Ritorna il numero totale di elementi del documento.
+     *
+     * @return Il numero di elementi indicizzati.
+     */
+    public int getIndexedElements() {
+        return index.size();
+    }
+
+    /**
+     * Chiude il file associato al documento. Il metodo {@link #close()} di
+     * {@link ttt.utils.xml.engine.interfaces.IXMLElement} non chiude il
+     * file.
+     *
+     * @throws IOException Nel caso in cui non sia possibile chiudere il file.
+     */
+    public void closeFile() throws IOException {
+        index.close();
+    }
+}
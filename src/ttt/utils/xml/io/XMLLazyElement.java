@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+import ttt.utils.xml.document.XMLElement;
+import ttt.utils.xml.engine.interfaces.IXMLComment;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+import ttt.utils.xml.engine.interfaces.IXMLTag;
+
+/**
+ * Elemento di un {@link XMLLazyDocument}: il nome è disponibile subito,
+ * mentre attributi, valore, commenti e sotto-elementi vengono letti dal file
+ * solo al primo accesso. I sotto-elementi sono a loro volta elementi
+ * {@link XMLLazyElement}, perciò viene letto solo il contenuto degli elementi
+ * effettivamente utilizzati.<br>
+ * Una volta letto, l'elemento può essere modificato come un
+ * {@link XMLElement}. Gli errori di lettura vengono lanciati come
+ * {@link UncheckedIOException}.
+ *
+ * @author TTT
+ */
+public class XMLLazyElement implements IXMLElement {
+
+    private final XMLIndex index;
+    private final int id;
+    private XMLElement content;
+
+    XMLLazyElement(XMLIndex index, int id) {
+        this.index = index;
+        this.id = id;
+    }
+
+    /**
+     * Ritorna se il contenuto dell'elemento è già stato letto dal file.
+     *
+     * @return {@code true} se l'elemento è già stato letto.
+     */
+    public boolean isLoaded() {
+        return content != null;
+    }
+
+    /**
+     * Ritorna la profondità dell'elemento nel documento (la radice ha
+     * profondità {@code 0}).
+     *
+     * @return La profondità dell'elemento.
+     */
+    public int getDepth() {
+        return index.getDepth(id);
+    }
+
+    /**
+     * Legge, se non ancora fatto, il contenuto dell'elemento e crea i suoi
+     * sotto-elementi (non ancora letti).
+     *
+     * @return Il contenuto dell'elemento.
+     */
+    private XMLElement content() {
+        if (content == null) {
+            XMLElement loaded;
+            try {
+                loaded = index.readContent(id);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            for (int child = index.getFirstChild(id); child >= 0; child = index.getNextSibling(child)) {
+                loaded.addSubElement(new XMLLazyElement(index, child));
+            }
+            content = loaded;
+        }
+        return content;
+    }
+
+    @Override
+    public String getName() {
+        return index.getName(id);
+    }
+
+    @Override
+    public String getValue() {
+        return content().getValue();
+    }
+
+    @Override
+    public void setValue(String value) {
+        content().setValue(value);
+    }
+
+    @Override
+    public boolean hasSubElements() {
+        return content != null ? content.hasSubElements() : index.getFirstChild(id) >= 0;
+    }
+
+    @Override
+    public void addSubElement(IXMLElement element) {
+        content().addSubElement(element);
+    }
+
+    @Override
+    public void removeSubElement(IXMLElement element) {
+        content().removeSubElement(element);
+    }
+
+    @Override
+    public boolean hasElement(IXMLElement element) {
+        return content().hasElement(element);
+    }
+
+    @Override
+    public void addTag(IXMLTag tag) {
+        content().addTag(tag);
+    }
+
+    @Override
+    public void removeTag(IXMLTag tag) {
+        content().removeTag(tag);
+    }
+
+    @Override
+    public boolean hasTag(String name) {
+        return content().hasTag(name);
+    }
+
+    @Override
+    public IXMLTag getTag(String name) {
+        return content().getTag(name);
+    }
+
+    @Override
+    public List<IXMLTag> getTags() {
+        return content().getTags();
+    }
+
+    @Override
+    public void forEachTag(Consumer<? super IXMLTag> action) {
+        content().forEachTag(action);
+    }
+
+    @Override
+    public List<IXMLElement> getElements() {
+        return content().getElements();
+    }
+
+    @Override
+    public void forEachElement(Consumer<? super IXMLElement> action) {
+        content().forEachElement(action);
+    }
+
+    @Override
+    public IXMLElement getFirstElement(String name) {
+        return content().getFirstElement(name);
+    }
+
+    @Override
+    public List<IXMLElement> getElements(String name) {
+        return content().getElements(name);
+    }
+
+    /**
+     * Un elemento letto da file è sempre completo, perciò è sempre chiuso.
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isClosed() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public IXMLElement getLast() {
+        return null;
+    }
+
+    @Override
+    public List<IXMLComment> getComments() {
+        return content().getComments();
+    }
+
+    @Override
+    public void addComment(IXMLComment comment) {
+        content().addComment(comment);
+    }
+}
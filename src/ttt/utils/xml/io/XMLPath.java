@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.util.ArrayList;
+
+/**
+ * Espressione di percorso semplice utilizzata da
+ * {@link XMLReader#readMatching(XMLPath...)} per leggere solo alcuni elementi
+ * di un documento.<br>
+ * Un percorso è composto da una serie di passi, ognuno preceduto da
+ * {@code /} (figlio diretto) oppure da {@code //} (discendente a qualsiasi
+ * profondità). Ogni passo è il nome di un elemento oppure {@code *} (qualsiasi
+ * elemento), seguito eventualmente da uno o più filtri sugli attributi:
+ * {@code [@nome]} (attributo presente) oppure {@code [@nome='valore']}.<br>
+ * Ad esempio: {@code /catalog/item/price}, {@code //item[@id]},
+ * {@code /catalog/*[@type="book"]//title}.
+ *
+ * @author TTT
+ */
+public final class XMLPath {
+
+    private final String expression;
+    private final String[] names;
+    private final boolean[] descendant;
+    private final String[][] attribute_names;
+    private final String[][] attribute_values;
+
+    private XMLPath(String expression, ArrayList<String> names, ArrayList<Boolean> descendant, ArrayList<String[]> attribute_names, ArrayList<String[]> attribute_values) {
+        this.expression = expression;
+        this.names = names.toArray(new String[names.size()]);
+        this.descendant = new boolean[descendant.size()];
+        for (int i = 0; i < this.descendant.length; i++) {
+            this.descendant[i] = descendant.get(i);
+        }
+        this.attribute_names = attribute_names.toArray(new String[attribute_names.size()][]);
+        this.attribute_values = attribute_values.toArray(new String[attribute_values.size()][]);
+    }
+
+    /**
+     * Compila un'espressione di percorso.
+     *
+     * @param expression L'espressione da compilare.
+     * @return Il percorso compilato.
+     * @throws IllegalArgumentException Nel caso in cui l'espressione non sia
+     * valida.
+     */
+    public static XMLPath compile(String expression) {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<Boolean> descendant = new ArrayList<>();
+        ArrayList<String[]> attribute_names = new ArrayList<>();
+        ArrayList<String[]> attribute_values = new ArrayList<>();
+        int i = 0;
+        int len = expression.length();
+        if (len == 0 || expression.charAt(0) != '/') {
+            throw invalid(expression, 0, "path must start with '/'");
+        }
+        while (i < len) {
+            if (expression.charAt(i) != '/') {
+                throw invalid(expression, i, "expected '/'");
+            }
+            i++;
+            boolean desc = i < len && expression.charAt(i) == '/';
+            if (desc) {
+                i++;
+            }
+            int name_start = i;
+            if (i < len && expression.charAt(i) == '*') {
+                i++;
+            } else {
+                while (i < len && isNameChar(expression.charAt(i))) {
+                    i++;
+                }
+            }
+            if (i == name_start) {
+                throw invalid(expression, i, "expected element name or '*'");
+            }
+            String name = expression.substring(name_start, i);
+            ArrayList<String> attr_names = new ArrayList<>();
+            ArrayList<String> attr_values = new ArrayList<>();
+            while (i < len && expression.charAt(i) == '[') {
+                i++;
+                if (i >= len || expression.charAt(i) != '@') {
+                    throw invalid(expression, i, "expected '@'");
+                }
+                i++;
+                int attr_start = i;
+                while (i < len && isNameChar(expression.charAt(i))) {
+                    i++;
+                }
+                if (i == attr_start) {
+                    throw invalid(expression, i, "expected attribute name");
+                }
+                attr_names.add(expression.substring(attr_start, i));
+                String value = null;
+                if (i < len && expression.charAt(i) == '=') {
+                    i++;
+                    char quote = i < len ? expression.charAt(i) : 0;
+                    if (quote != '\'' && quote != '"') {
+                        throw invalid(expression, i, "expected quoted value");
+                    }
+                    int end = expression.indexOf(quote, i + 1);
+                    if (end < 0) {
+                        throw invalid(expression, i, "unterminated value");
+                    }
+                    value = expression.substring(i + 1, end);
+                    i = end + 1;
+                }
+                attr_values.add(value);
+                if (i >= len || expression.charAt(i) != ']') {
+                    throw invalid(expression, i, "expected ']'");
+                }
+                i++;
+            }
+            names.add("*".equals(name) ? null : name);
+            descendant.add(desc);
+            attribute_names.add(attr_names.toArray(new String[attr_names.size()]));
+            attribute_values.add(attr_values.toArray(new String[attr_values.size()]));
+        }
+        return new XMLPath(expression, names, descendant, attribute_names, attribute_values);
+    }
+
+    private static boolean isNameChar(char c) {
+        return c != '/' && c != '[' && c != ']' && c != '@' && c != '=' && c != '*' && c != '\'' && c != '"' && !Character.isWhitespace(c);
+    }
+
+    private static IllegalArgumentException invalid(String expression, int position, String message) {
+        return new IllegalArgumentException("Invalid path '" + expression + "' at " + position + ": " + message);
+    }
+
+    /**
+     * Ritorna il numero di passi del percorso.
+     *
+     * @return Il numero di passi.
+     */
+    int length() {
+        return names.length;
+    }
+
+    /**
+     * Ritorna se un passo può corrispondere ad un discendente a qualsiasi
+     * profondità ({@code //}).
+     *
+     * @param step La posizione del passo.
+     * @return {@code true} se il passo è preceduto da {@code //}.
+     */
+    boolean isDescendant(int step) {
+        return descendant[step];
+    }
+
+    /**
+     * Controlla se un elemento corrisponde ad un passo del percorso.
+     *
+     * @param step La posizione del passo.
+     * @param name Il nome dell'elemento.
+     * @param attributes Gli attributi dell'elemento.
+     * @return {@code true} se l'elemento corrisponde.
+     */
+    boolean matches(int step, String name, IXMLAttributes attributes) {
+        if (names[step] != null && !names[step].equals(name)) {
+            return false;
+        }
+        String[] attr_names = attribute_names[step];
+        for (int i = 0; i < attr_names.length; i++) {
+            String value = attributes.getValue(attr_names[i]);
+            if (value == null || (attribute_values[step][i] != null && !attribute_values[step][i].equals(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.nio.file.Path;
+import ttt.utils.xml.document.XMLDocument;
+
+/**
+ * Rappresenta il risultato della lettura di un singolo file durante una
+ * lettura multipla ({@link XMLReader#readAll(java.nio.file.Path, java.lang.String)}):
+ * contiene il documento letto oppure l'errore che ne ha impedito la lettura.
+ *
+ * @author TTT
+ */
+public class XMLReadResult {
+
+    private final Path path;
+    private final XMLDocument document;
+    private final Exception error;
+
+    /**
+     * Crea un nuovo risultato.
+     *
+     * @param path Il file letto.
+     * @param document Il documento letto oppure {@code null} in caso di
+     * errore.
+     * @param error L'errore di lettura oppure {@code null}.
+     */
+    public XMLReadResult(Path path, XMLDocument document, Exception error) {
+        this.path = path;
+        this.document = document;
+        this.error = error;
+    }
+
+    /**
+     * Ritorna il file letto.
+     *
+     * @return Il percorso del file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Ritorna il documento letto.
+     *
+     * @return Il documento oppure {@code null} se la lettura è fallita.
+     */
+    public XMLDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * Ritorna l'errore che ha impedito la lettura del file.
+     *
+     * @return L'errore oppure {@code null} se la lettura è riuscita.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Ritorna se il file è stato letto correttamente.
+     *
+     * @return {@code true} se non ci sono stati errori.
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+}
@@ -15,22 +15,46 @@
  */
 package ttt.utils.xml.io;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.ResourceBundle;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import ttt.utils.xml.document.XMLComment;
+import ttt.utils.xml.document.XMLCompactElement;
 import ttt.utils.xml.document.XMLDocument;
 import ttt.utils.xml.document.XMLElement;
 import ttt.utils.xml.document.XMLTag;
+import ttt.utils.xml.document.structure.StructureValidatingHandler;
+import ttt.utils.xml.document.structure.StructureValidator;
+import ttt.utils.xml.document.structure.exception.InvalidXMLFormat;
+import ttt.utils.xml.engine.interfaces.IXMLComment;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
 
 /**
  * Serve per leggere un file di testo strutturato come XML.
@@ -53,8 +77,16 @@ public class XMLReader {
     classe XMLEngine che si deve occupare di completare (assegnare i valori, 
     perciò chiamando metodi o direttamente variabili) con i valori letti.
      */
+    /**
+     * Dimensione di default del buffer di lettura.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
     private final File f;
     private final InputStream f_strem;
+    private int buffer_size = DEFAULT_BUFFER_SIZE;
+    private boolean mapped_input = false;
+    private boolean compact = false;
 
     public XMLReader(File file) {
         this.f = file;
@@ -66,6 +98,73 @@ public class XMLReader {
         f = null;
     }
 
+    /**
+     * Imposta la dimensione del buffer utilizzato per leggere il file (in
+     * byte, oppure in caratteri decodificati nel caso di lettura mappata).
+     *
+     * @param buffer_size La dimensione del buffer.
+     */
+    public void setBufferSize(int buffer_size) {
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + buffer_size);
+        }
+        this.buffer_size = buffer_size;
+    }
+
+    /**
+     * Ritorna la dimensione del buffer di lettura.
+     *
+     * @return La dimensione del buffer.
+     */
+    public int getBufferSize() {
+        return buffer_size;
+    }
+
+    /**
+     * Abilita la lettura del file tramite {@link java.nio.MappedByteBuffer}:
+     * il file viene mappato in memoria e decodificato in UTF-8 a blocchi della
+     * dimensione impostata con {@link #setBufferSize(int)}, evitando le copie
+     * e le chiamate di sistema della lettura tramite stream.<br>
+     * Ha effetto solo se il {@link XMLReader} è associato ad un file, il quale
+     * deve essere codificato in UTF-8 (o ASCII).
+     *
+     * @param mapped_input {@code true} per abilitare la lettura mappata.
+     */
+    public void setMappedInput(boolean mapped_input) {
+        this.mapped_input = mapped_input;
+    }
+
+    /**
+     * Ritorna se la lettura mappata è abilitata.
+     *
+     * @return {@code true} se il file viene letto tramite
+     * {@link java.nio.MappedByteBuffer}.
+     */
+    public boolean isMappedInput() {
+        return mapped_input;
+    }
+
+    /**
+     * Se abilitata, {@link #readDocument()} crea elementi di sola lettura
+     * {@link XMLCompactElement} invece di {@link XMLElement}, riducendo la
+     * memoria occupata dai documenti molto grandi.
+     *
+     * @param compact {@code true} per abilitare la lettura compatta.
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Ritorna se la lettura compatta è abilitata.
+     *
+     * @return {@code true} se vengono creati elementi
+     * {@link XMLCompactElement}.
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
     /**
      * Legge il file associato a questo {@link XMLReader} per estrapolarne un
      * oggetto {@link XMLDocument} con i relativi {@link XMLElement} ognungo
@@ -75,86 +174,670 @@ public class XMLReader {
      * @throws IOException Nel caso in cui il file non esiste.
      */
     public XMLDocument readDocument() throws IOException {
-        if (f != null && f.exists() && f.isFile()) {
-            XMLDocument document = new XMLDocument(f);
+        XMLDocument document = new XMLDocument(f != null && f.exists() && f.isFile() ? f : null);
+        parse(compact ? new CompactBuilder(document) : new XMLDocumentBuilder(document));
+        return document;
+    }
+
+    /**
+     * Apre il file associato a questo {@link XMLReader} come
+     * {@link XMLLazyDocument}: viene letta solo la struttura del documento,
+     * mentre il contenuto di ogni elemento viene letto al primo accesso.<br>
+     * Disponibile solo se il {@link XMLReader} è associato ad un file, il
+     * quale deve essere codificato in UTF-8 (o ASCII).
+     *
+     * @return Il documento, il cui file deve essere chiuso al termine
+     * dell'utilizzo con {@link XMLLazyDocument#closeFile()}.
+     * @throws IOException Nel caso in cui il file non esiste o non è
+     * formattato correttamente.
+     */
+    public XMLLazyDocument readLazyDocument() throws IOException {
+        if (f == null || !f.isFile()) {
+            throw new IOException(read_errors.getString("not_found_or_incorrect"));
+        }
+        XMLIndex index = XMLIndex.build(f, buffer_size);
+        try {
+            return new XMLLazyDocument(f, index);
+        } catch (IOException | RuntimeException ex) {
+            index.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Legge il file associato a questo {@link XMLReader} inviando ogni evento
+     * all'handler specificato, senza creare nessun elemento.
+     *
+     * @param handler L'handler che riceve gli eventi.
+     * @throws IOException Nel caso in cui il file non esiste o non è
+     * formattato correttamente.
+     */
+    public void parse(IXMLHandler handler) throws IOException {
+        Closeable input = openInput();
+        try {
+            XMLStreamReader xmlsr = createStreamReader(input);
             try {
-                XMLInputFactory xmlif = XMLInputFactory.newInstance();
-                XMLStreamReader xmlsr = xmlif.createXMLStreamReader(f.getAbsolutePath(), new FileInputStream(f));
-                parseDocument(xmlsr, document);
+                parse(xmlsr, handler);
+            } finally {
                 xmlsr.close();
-            } catch (FileNotFoundException | XMLStreamException e) {
-                throw new IOException(read_errors.getString("not_found_or_incorrect"));
             }
+        } catch (XMLStreamException e) {
+            throw new IOException(read_errors.getString("not_found_or_incorrect"), e);
+        } finally {
+            closeInput(input);
+        }
+    }
 
-            return document;
-        } else if (f_strem != null) {
-            XMLDocument document = new XMLDocument(null);
+    /**
+     * Come {@link #readMatching(XMLPath...)}, compilando le espressioni
+     * specificate.
+     *
+     * @param paths Le espressioni dei percorsi da leggere.
+     * @return Gli elementi corrispondenti, in ordine di documento.
+     * @throws IOException Nel caso in cui il file non esiste o non è
+     * formattato correttamente.
+     * @throws IllegalArgumentException Nel caso in cui un'espressione non sia
+     * valida.
+     */
+    public List<IXMLElement> readMatching(String... paths) throws IOException {
+        XMLPath[] compiled = new XMLPath[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            compiled[i] = XMLPath.compile(paths[i]);
+        }
+        return readMatching(compiled);
+    }
+
+    /**
+     * Legge solo gli elementi (completi di sotto-elementi) che corrispondono
+     * ad almeno uno dei percorsi specificati. Se un elemento corrisponde,
+     * gli eventuali elementi corrispondenti al suo interno sono già contenuti
+     * nel suo sotto-albero e non vengono ritornati separatamente.<br>
+     * I sotto-alberi che non possono contenere nessun elemento corrispondente
+     * vengono saltati senza creare nessun elemento o tag.
+     *
+     * @param paths I percorsi da leggere.
+     * @return Gli elementi corrispondenti, in ordine di documento.
+     * @throws IOException Nel caso in cui il file non esiste o non è
+     * formattato correttamente.
+     */
+    public List<IXMLElement> readMatching(XMLPath... paths) throws IOException {
+        Closeable input = openInput();
+        try {
+            XMLStreamReader xmlsr = createStreamReader(input);
             try {
-                XMLInputFactory xmlif = XMLInputFactory.newInstance();
-                XMLStreamReader xmlsr = xmlif.createXMLStreamReader(f_strem);
-                parseDocument(xmlsr, document);
+                return readMatching(xmlsr, paths);
+            } finally {
                 xmlsr.close();
-            } catch (XMLStreamException e) {
-                throw new IOException(read_errors.getString("not_found_or_incorrect"));
             }
+        } catch (XMLStreamException e) {
+            throw new IOException(read_errors.getString("not_found_or_incorrect"), e);
+        } finally {
+            closeInput(input);
+        }
+    }
 
-            return document;
-        } else {
-            throw new IOException(read_errors.getString("not_found_or_incorrect"));
+    /**
+     * Legge il file associato a questo {@link XMLReader} creando gli elementi
+     * tramite la factory specificata, in un unico passaggio: ogni elemento
+     * viene creato all'apertura del suo tag (e gli vengono aggiunti gli
+     * attributi letti), completato alla sua chiusura e solo allora aggiunto
+     * all'elemento padre.
+     *
+     * @param factory La factory che crea e completa gli elementi.
+     * @return Il nuovo documento con gli elementi creati dalla factory.
+     * @throws IOException Nel caso in cui il file non esiste.
+     */
+    public XMLDocument readDocument(IXMLElementFactory factory) throws IOException {
+        XMLDocument document = new XMLDocument(f != null && f.exists() && f.isFile() ? f : null);
+        parse(new FactoryBuilder(document, factory));
+        return document;
+    }
+
+    /**
+     * Come {@link #readDocument()}, verificando la struttura del documento
+     * durante la lettura: la lettura viene interrotta al primo elemento che
+     * non rispetta la struttura.<br>
+     * Tutti gli elementi vengono verificati come istanze di
+     * {@link XMLElement} (oppure di {@link XMLCompactElement} nel caso della
+     * lettura compatta).
+     *
+     * @param validator Il validatore della struttura.
+     * @return Il nuovo documento tradotto in oggetti {@link XMLElement}.
+     * @throws IOException Nel caso in cui il file non esiste.
+     * @throws InvalidXMLFormat Nel caso in cui il documento non rispetti la
+     * struttura.
+     */
+    public XMLDocument readDocument(StructureValidator validator) throws IOException, InvalidXMLFormat {
+        XMLDocument document = new XMLDocument(f != null && f.exists() && f.isFile() ? f : null);
+        IXMLHandler builder = compact ? new CompactBuilder(document) : new XMLDocumentBuilder(document);
+        parse(new StructureValidatingHandler(validator, Collections.emptyMap(), compact ? XMLCompactElement.class : XMLElement.class, builder));
+        return document;
+    }
+
+    /**
+     * Come {@link #readDocument(IXMLElementFactory)}, verificando la
+     * struttura del documento durante la lettura: la lettura viene
+     * interrotta al primo elemento che non rispetta la struttura.
+     *
+     * @param factory La factory che crea e completa gli elementi.
+     * @param validator Il validatore della struttura.
+     * @param classes Le classi degli elementi creati dalla factory,
+     * associate al nome degli elementi. Gli elementi il cui nome non è
+     * presente vengono verificati come istanze di {@link XMLElement}.
+     * @return Il nuovo documento con gli elementi creati dalla factory.
+     * @throws IOException Nel caso in cui il file non esiste.
+     * @throws InvalidXMLFormat Nel caso in cui il documento non rispetti la
+     * struttura.
+     */
+    public XMLDocument readDocument(IXMLElementFactory factory, StructureValidator validator, Map<String, Class<? extends IXMLElement>> classes) throws IOException, InvalidXMLFormat {
+        XMLDocument document = new XMLDocument(f != null && f.exists() && f.isFile() ? f : null);
+        parse(new StructureValidatingHandler(validator, classes, XMLElement.class, new FactoryBuilder(document, factory)));
+        return document;
+    }
+
+    /**
+     * Legge il documento in modalità <i>pull</i> senza costruire l'albero
+     * completo: ritorna un iteratore che restituisce, uno alla volta, i
+     * sotto-alberi degli elementi che si trovano alla profondità
+     * specificata.<br>
+     * La root del documento ha profondità {@code 0}, i suoi figli profondità
+     * {@code 1} e così via. Gli elementi (e i relativi commenti o valori) che
+     * si trovano sopra la profondità richiesta non vengono creati.<br>
+     * Ogni sotto-elemento ritornato non è più referenziato dall'iteratore una
+     * volta che si passa al successivo, perciò la memoria occupata dipende
+     * solo dall'elemento più grande letto.
+     *
+     * @param depth La profondità degli elementi da restituire.
+     * @return L'iteratore sugli elementi: deve essere chiuso al termine
+     * dell'utilizzo.
+     * @throws IOException Nel caso in cui il file non esiste o non è
+     * leggibile.
+     */
+    public XMLElementIterator iterateElements(int depth) throws IOException {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must be non-negative: " + depth);
+        }
+        Closeable input = openInput();
+        try {
+            return new XMLElementIterator(createStreamReader(input), input != f_strem ? input : null, depth);
+        } catch (XMLStreamException e) {
+            closeInput(input);
+            throw new IOException(read_errors.getString("not_found_or_incorrect"), e);
         }
     }
 
     /**
-     * Esegue il parse per eventi base XML.
+     * Legge in parallelo tutti i file di una cartella il cui nome rispetta il
+     * pattern specificato, utilizzando un pool di thread pari al numero di
+     * processori disponibili.
      *
-     * @param xmlsr Lo stream di lettura XML.
-     * @param d Il documento in cui vanno salvati gli elementi.
+     * @param dir La cartella da cui leggere i file.
+     * @param glob Il pattern dei file da leggere (ad esempio {@code "*.xml"}).
+     * @return Un iteratore che restituisce i risultati in ordine di
+     * completamento.
+     * @throws IOException Nel caso in cui non sia possibile leggere la
+     * cartella.
+     * @see #readAll(java.nio.file.Path, java.lang.String,
+     * java.util.concurrent.ExecutorService)
      */
-    private void parseDocument(XMLStreamReader xmlsr, XMLDocument d) {
+    public static Iterator<XMLReadResult> readAll(Path dir, String glob) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
         try {
-            while (xmlsr.hasNext()) {
-                switch (xmlsr.getEventType()) {
-                    case XMLStreamConstants.START_DOCUMENT:
-                        break;
-                    case XMLStreamConstants.START_ELEMENT:
-                        d.getLast().addSubElement(parseElement(xmlsr));
-                        break;
-                    case XMLStreamConstants.END_ELEMENT:
-                        d.getLast().close();
-                        break;
-                    case XMLStreamConstants.COMMENT:
-                        d.getLast().addComment(new XMLComment(xmlsr.getText()));
-                        break;
-                    case XMLStreamConstants.CHARACTERS: // content all’interno di un elemento: stampa il testo
-                        if (xmlsr.getText().trim().length() > 0) {
-                            d.getLast().setValue(xmlsr.getText());
+            return readAll(dir, glob, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Legge in parallelo tutti i file di una cartella il cui nome rispetta il
+     * pattern specificato. Ogni file viene letto come un task separato
+     * dell'executor fornito (che può utilizzare sia thread di piattaforma che
+     * thread virtuali) e non viene chiuso da questo metodo.<br>
+     * Gli errori di lettura di un file non interrompono la lettura degli altri:
+     * vengono riportati nel relativo {@link XMLReadResult}.
+     *
+     * @param dir La cartella da cui leggere i file.
+     * @param glob Il pattern dei file da leggere (ad esempio {@code "*.xml"}).
+     * @param executor L'executor su cui eseguire le letture.
+     * @return Un iteratore che restituisce i risultati in ordine di
+     * completamento.
+     * @throws IOException Nel caso in cui non sia possibile leggere la
+     * cartella.
+     */
+    public static Iterator<XMLReadResult> readAll(Path dir, String glob, ExecutorService executor) throws IOException {
+        ArrayList<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, glob)) {
+            for (Path p : ds) {
+                if (Files.isRegularFile(p)) {
+                    files.add(p);
+                }
+            }
+        }
+        CompletionService<XMLReadResult> completion = new ExecutorCompletionService<>(executor);
+        files.forEach(p -> completion.submit(() -> {
+            try {
+                return new XMLReadResult(p, new XMLReader(p.toFile()).readDocument(), null);
+            } catch (IOException | RuntimeException ex) {
+                return new XMLReadResult(p, null, ex);
+            }
+        }));
+        return new Iterator<XMLReadResult>() {
+            private int remaining = files.size();
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public XMLReadResult next() {
+                if (remaining <= 0) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    XMLReadResult result = completion.take().get();
+                    remaining--;
+                    return result;
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException());
+                } catch (ExecutionException ex) {
+                    throw new UncheckedIOException(new IOException(ex.getCause()));
+                }
+            }
+        };
+    }
+
+    /**
+     * Apre la sorgente associata a questo {@link XMLReader}: nel caso di un
+     * file viene aperto uno stream bufferizzato oppure, se abilitata la
+     * lettura mappata, un {@link MappedFileReader}.
+     *
+     * @return Lo stream ({@link InputStream} o {@link Reader}) da cui leggere
+     * il documento.
+     * @throws IOException Nel caso in cui il file non esiste.
+     */
+    private Closeable openInput() throws IOException {
+        if (f != null && f.exists() && f.isFile()) {
+            if (mapped_input) {
+                return new MappedFileReader(f, buffer_size);
+            }
+            return new BufferedInputStream(new FileInputStream(f), buffer_size);
+        } else if (f_strem != null) {
+            return f_strem;
+        }
+        throw new IOException(read_errors.getString("not_found_or_incorrect"));
+    }
+
+    /**
+     * Chiude la sorgente nel caso sia stata aperta da questo
+     * {@link XMLReader}.
+     *
+     * @param input La sorgente da chiudere.
+     * @throws IOException Nel caso in cui non sia possibile chiuderla.
+     */
+    private void closeInput(Closeable input) throws IOException {
+        if (input != f_strem) {
+            input.close();
+        }
+    }
+
+    /**
+     * Crea lo stream di lettura XML a partire dalla sorgente.
+     *
+     * @param input La sorgente ({@link InputStream} o {@link Reader}).
+     * @return Lo stream di lettura XML.
+     * @throws XMLStreamException Nel caso in cui non sia possibile creare lo
+     * stream.
+     */
+    private XMLStreamReader createStreamReader(Closeable input) throws XMLStreamException {
+        XMLInputFactory xmlif = XMLStreamFactories.getInputFactory();
+        if (input instanceof Reader) {
+            return xmlif.createXMLStreamReader(f.getAbsolutePath(), (Reader) input);
+        } else if (input != f_strem) {
+            return xmlif.createXMLStreamReader(f.getAbsolutePath(), (InputStream) input);
+        }
+        return xmlif.createXMLStreamReader((InputStream) input);
+    }
+
+    /**
+     * Esegue il parse per eventi base XML, inviando ogni evento all'handler.
+     *
+     * @param xmlsr Lo stream di lettura XML.
+     * @param handler L'handler che riceve gli eventi.
+     * @throws XMLStreamException Nel caso in cui il documento non sia
+     * formattato correttamente.
+     */
+    private static void parse(XMLStreamReader xmlsr, IXMLHandler handler) throws XMLStreamException {
+        StreamAttributes attributes = new StreamAttributes(xmlsr);
+        while (xmlsr.hasNext()) {
+            dispatch(xmlsr, handler, attributes);
+            xmlsr.next();
+        }
+    }
+
+    /**
+     * Esegue il parse filtrato per percorsi.<br>
+     * Per ogni elemento aperto viene salvato l'insieme dei passi ancora
+     * raggiungibili (codificati come {@code percorso << 16 | passo}) in una
+     * pila di interi: un elemento corrisponde quando completa l'ultimo passo
+     * di un percorso, mentre gli elementi senza passi raggiungibili vengono
+     * saltati insieme a tutto il loro contenuto.
+     *
+     * @param xmlsr Lo stream di lettura XML.
+     * @param paths I percorsi da leggere.
+     * @return Gli elementi corrispondenti.
+     * @throws XMLStreamException Nel caso in cui il documento non sia
+     * formattato correttamente.
+     */
+    private static List<IXMLElement> readMatching(XMLStreamReader xmlsr, XMLPath[] paths) throws XMLStreamException {
+        ArrayList<IXMLElement> matches = new ArrayList<>();
+        StreamAttributes attributes = new StreamAttributes(xmlsr);
+        int[] states = new int[Math.max(16, paths.length * 4)];
+        int[] frames = new int[16];
+        int depth = 0;
+        int top = 0;
+        for (int p = 0; p < paths.length; p++) {
+            if (paths[p].length() > 0) {
+                states[top++] = p << 16;
+            }
+        }
+        frames[0] = 0;
+        XMLDocumentBuilder builder = null;
+        int building_depth = 0;
+        while (xmlsr.hasNext()) {
+            int event = xmlsr.next();
+            if (builder != null) {
+                dispatch(xmlsr, builder, attributes);
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    building_depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT && --building_depth == 0) {
+                    matches.add(builder.takeLastClosed());
+                    builder = null;
+                }
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xmlsr.getLocalName();
+                int from = frames[depth];
+                int to = top;
+                boolean matched = false;
+                if (to + 2 * (to - from) > states.length) {
+                    states = Arrays.copyOf(states, Math.max(to + 2 * (to - from), states.length * 2));
+                }
+                for (int i = from; i < to && !matched; i++) {
+                    XMLPath path = paths[states[i] >>> 16];
+                    int step = states[i] & 0xFFFF;
+                    if (path.isDescendant(step)) {
+                        top = addState(states, to, top, states[i]);
+                    }
+                    if (path.matches(step, name, attributes)) {
+                        if (step + 1 == path.length()) {
+                            matched = true;
+                        } else {
+                            top = addState(states, to, top, states[i] + 1);
                         }
-                        break;
-                    default:
-                        break;
+                    }
                 }
-                xmlsr.next();
+                if (matched) {
+                    top = to;
+                    builder = new XMLDocumentBuilder(null);
+                    dispatch(xmlsr, builder, attributes);
+                    building_depth = 1;
+                } else if (top == to) {
+                    skipElement(xmlsr);
+                } else {
+                    depth++;
+                    if (depth == frames.length) {
+                        frames = Arrays.copyOf(frames, depth * 2);
+                    }
+                    frames[depth] = to;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                top = frames[depth];
+                depth--;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Aggiunge uno stato all'insieme che inizia in {@code from}, se non è già
+     * presente.
+     *
+     * @return La nuova fine dell'insieme.
+     */
+    private static int addState(int[] states, int from, int top, int state) {
+        for (int i = from; i < top; i++) {
+            if (states[i] == state) {
+                return top;
+            }
+        }
+        states[top] = state;
+        return top + 1;
+    }
+
+    /**
+     * Salta l'elemento corrente e tutto il suo contenuto, posizionando lo
+     * stream sulla sua chiusura.
+     *
+     * @param xmlsr Lo stream di lettura XML, posizionato sull'apertura
+     * dell'elemento.
+     * @throws XMLStreamException Nel caso in cui il documento non sia
+     * formattato correttamente.
+     */
+    private static void skipElement(XMLStreamReader xmlsr) throws XMLStreamException {
+        int level = 1;
+        while (level > 0) {
+            int event = xmlsr.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                level++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                level--;
             }
-        } catch (XMLStreamException ex) {
-            Logger.getLogger(XMLReader.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
 
     /**
-     * Esegue il parse di un singolo elemento: lo crea e gli associa gli
-     * attributi.
+     * Invia l'evento corrente dello stream all'handler.
      *
      * @param xmlsr Lo stream di lettura XML.
-     * @return Il nuovo oggetto {@link XMLElement}.
+     * @param handler L'handler che riceve l'evento.
+     * @param attributes Gli attributi associati allo stream.
+     */
+    static void dispatch(XMLStreamReader xmlsr, IXMLHandler handler, StreamAttributes attributes) {
+        switch (xmlsr.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT:
+                handler.onStart(xmlsr.getLocalName(), attributes);
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                handler.onEnd(xmlsr.getLocalName());
+                break;
+            case XMLStreamConstants.COMMENT:
+                handler.onComment(xmlsr.getText());
+                break;
+            case XMLStreamConstants.CHARACTERS:
+                handler.onText(xmlsr.getTextCharacters(), xmlsr.getTextStart(), xmlsr.getTextLength());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Costruisce elementi {@link XMLCompactElement}: ogni elemento viene
+     * creato alla sua chiusura, quando sono noti tutti i suoi figli.
      */
-    private XMLElement parseElement(XMLStreamReader xmlsr) {
-        XMLElement element = new XMLElement(xmlsr.getLocalName());
-        for (int i = 0; i < xmlsr.getAttributeCount(); i++) {
-            XMLTag xmlTag = new XMLTag(xmlsr.getAttributeLocalName(i));
-            xmlTag.setValue(xmlsr.getAttributeValue(i));
-            element.addTag(xmlTag);
+    private static final class CompactBuilder implements IXMLHandler {
+
+        private final XMLDocument document;
+        private final ArrayDeque<CompactFrame> open_elements = new ArrayDeque<>();
+
+        private CompactBuilder(XMLDocument document) {
+            this.document = document;
+        }
+
+        @Override
+        public void onStart(String name, IXMLAttributes attributes) {
+            open_elements.push(new CompactFrame(name, attributes));
+        }
+
+        @Override
+        public void onText(char[] text, int start, int length) {
+            if (!open_elements.isEmpty() && !XMLDocumentBuilder.isBlank(text, start, length)) {
+                open_elements.peek().value = new String(text, start, length);
+            }
+        }
+
+        @Override
+        public void onEnd(String name) {
+            XMLCompactElement element = open_elements.pop().build();
+            if (open_elements.isEmpty()) {
+                document.addSubElement(element);
+            } else {
+                open_elements.peek().addSubElement(element);
+            }
+        }
+
+        @Override
+        public void onComment(String comment) {
+            if (open_elements.isEmpty()) {
+                document.addComment(new XMLComment(comment));
+            } else {
+                open_elements.peek().addComment(new XMLComment(comment));
+            }
+        }
+    }
+
+    /**
+     * Contiene i dati di un elemento aperto durante la lettura compatta.
+     */
+    private static final class CompactFrame {
+
+        private static final IXMLElement[] NO_ELEMENTS = new IXMLElement[0];
+        private static final IXMLComment[] NO_COMMENTS = new IXMLComment[0];
+
+        private final String name;
+        private final String[] tag_names;
+        private final String[] tag_values;
+        private String value;
+        private ArrayList<IXMLElement> sub_elements;
+        private ArrayList<IXMLComment> comments;
+
+        private CompactFrame(String name, IXMLAttributes attributes) {
+            this.name = name;
+            int count = attributes.getCount();
+            tag_names = new String[count];
+            tag_values = new String[count];
+            for (int i = 0; i < count; i++) {
+                tag_names[i] = attributes.getName(i);
+                tag_values[i] = attributes.getValue(i);
+            }
+        }
+
+        private void addSubElement(IXMLElement element) {
+            if (sub_elements == null) {
+                sub_elements = new ArrayList<>();
+            }
+            sub_elements.add(element);
+        }
+
+        private void addComment(IXMLComment comment) {
+            if (comment.getValue() != null && !"".equals(comment.getValue().trim())) {
+                if (comments == null) {
+                    comments = new ArrayList<>();
+                }
+                comments.add(comment);
+            }
+        }
+
+        private XMLCompactElement build() {
+            return new XMLCompactElement(name, value, tag_names, tag_values,
+                    sub_elements != null ? sub_elements.toArray(NO_ELEMENTS) : null,
+                    comments != null ? comments.toArray(NO_COMMENTS) : null);
+        }
+    }
+
+    /**
+     * Crea gli elementi tramite una {@link IXMLElementFactory}. Gli elementi
+     * per cui la factory non crea nessuna istanza vengono ignorati insieme a
+     * tutto il loro contenuto.
+     */
+    private static final class FactoryBuilder implements IXMLHandler {
+
+        private final XMLDocument document;
+        private final IXMLElementFactory factory;
+        private final boolean interning = XMLStreamFactories.isInterning();
+        private final ArrayDeque<FactoryFrame> open_elements = new ArrayDeque<>();
+        private int skipped = 0;
+
+        private FactoryBuilder(XMLDocument document, IXMLElementFactory factory) {
+            this.document = document;
+            this.factory = factory;
+        }
+
+        @Override
+        public void onStart(String name, IXMLAttributes attributes) {
+            if (skipped > 0) {
+                skipped++;
+                return;
+            }
+            IXMLElement element = factory.createElement(interning ? name.intern() : name);
+            if (element == null) {
+                skipped = 1;
+                return;
+            }
+            for (int i = 0; i < attributes.getCount(); i++) {
+                String tag_name = attributes.getName(i);
+                XMLTag xmlTag = new XMLTag(interning ? tag_name.intern() : tag_name);
+                xmlTag.setValue(attributes.getValue(i));
+                element.addTag(xmlTag);
+            }
+            open_elements.push(new FactoryFrame(element));
+        }
+
+        @Override
+        public void onText(char[] text, int start, int length) {
+            if (skipped == 0 && !open_elements.isEmpty() && !XMLDocumentBuilder.isBlank(text, start, length)) {
+                open_elements.peek().value = new String(text, start, length);
+            }
+        }
+
+        @Override
+        public void onEnd(String name) {
+            if (skipped > 0) {
+                skipped--;
+                return;
+            }
+            FactoryFrame frame = open_elements.pop();
+            factory.completeElement(frame.element, frame.value);
+            frame.element.close();
+            if (open_elements.isEmpty()) {
+                document.addSubElement(frame.element);
+            } else {
+                open_elements.peek().element.addSubElement(frame.element);
+            }
+        }
+
+        @Override
+        public void onComment(String comment) {
+            if (skipped == 0) {
+                (open_elements.isEmpty() ? document : open_elements.peek().element).addComment(new XMLComment(comment));
+            }
+        }
+    }
+
+    /**
+     * Contiene un elemento aperto durante la lettura tramite factory e il
+     * valore letto fino a quel momento.
+     */
+    private static final class FactoryFrame {
+
+        private final IXMLElement element;
+        private String value;
+
+        private FactoryFrame(IXMLElement element) {
+            this.element = element;
         }
-        return element;
     }
 
 }
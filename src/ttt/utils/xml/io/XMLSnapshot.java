@@ -0,0 +1,463 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import ttt.utils.xml.document.XMLComment;
+import ttt.utils.xml.document.XMLDocument;
+import ttt.utils.xml.document.XMLElement;
+import ttt.utils.xml.document.XMLTag;
+import ttt.utils.xml.engine.interfaces.IXMLComment;
+import ttt.utils.xml.engine.interfaces.IXMLElement;
+import ttt.utils.xml.engine.interfaces.IXMLTag;
+
+/**
+ * Salva e carica un {@link XMLDocument} in un formato binario compatto, che
+ * può essere riletto molto più velocemente del file XML originale.<br>
+ * Il file binario (<i>snapshot</i>) contiene:
+ * <ul>
+ * <li>un'intestazione con la versione del formato e la dimensione, la data di
+ * modifica e il CRC32 del file XML da cui è stato creato;</li>
+ * <li>un dizionario con tutti i nomi di elementi e tags, salvati una sola
+ * volta;</li>
+ * <li>l'albero degli elementi in pre-ordine: per ogni elemento l'indice del
+ * nome, il valore, le tags, i commenti ed il numero di sotto-elementi.</li>
+ * </ul>
+ * Tutti i numeri sono salvati come varint e le stringhe in UTF-8 precedute
+ * dalla loro lunghezza. Lo snapshot viene letto tramite
+ * {@link MappedByteBuffer}.<br>
+ * {@link #load(File)} utilizza lo snapshot salvato accanto al file XML se è
+ * ancora valido, altrimenti legge il file XML e ricrea lo snapshot.
+ *
+ * @author TTT
+ */
+public final class XMLSnapshot {
+
+    /**
+     * L'estensione aggiunta al nome del file XML per ottenere il nome del suo
+     * snapshot.
+     */
+    public static final String EXTENSION = ".xsnap";
+
+    private static final int MAGIC = 0x58534E50;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+    private static final int MODIFIED_OFFSET = 16;
+
+    private static final int STALE = 0;
+    private static final int FRESH = 1;
+    private static final int FRESH_CONTENT = 2;
+
+    private XMLSnapshot() {
+    }
+
+    /**
+     * Ritorna il file snapshot associato ad un file XML, nella stessa
+     * cartella.
+     *
+     * @param source Il file XML.
+     * @return Il file snapshot.
+     */
+    public static File snapshotFileOf(File source) {
+        return new File(source.getPath() + EXTENSION);
+    }
+
+    /**
+     * Carica un file XML tramite il suo snapshot se esiste ed è ancora valido,
+     * altrimenti legge il file con {@link XMLReader} e salva un nuovo
+     * snapshot. Un errore durante il salvataggio dello snapshot non impedisce
+     * di ritornare il documento letto.<br>
+     * Le informazioni del file XML vengono lette prima del documento: se il
+     * file viene modificato durante la lettura lo snapshot non viene salvato.
+     * Se invece è cambiata solo la data di modifica, ma non il contenuto,
+     * viene aggiornata l'intestazione dello snapshot esistente.
+     *
+     * @param source Il file XML.
+     * @return Il documento letto.
+     * @throws IOException Nel caso in cui il file non esiste o non è
+     * formattato correttamente.
+     */
+    public static XMLDocument load(File source) throws IOException {
+        File snapshot = snapshotFileOf(source);
+        int state = check(snapshot, source);
+        if (state != STALE) {
+            try {
+                XMLDocument document = read(snapshot, source);
+                if (state == FRESH_CONTENT) {
+                    updateModified(snapshot, source.lastModified());
+                }
+                return document;
+            } catch (IOException ex) {
+                Logger.getLogger(XMLSnapshot.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        long length = source.length();
+        long modified = source.lastModified();
+        int crc = checksum(source);
+        XMLDocument document = new XMLReader(source).readDocument();
+        if (length == source.length() && modified == source.lastModified()) {
+            try {
+                write(document, snapshot, length, modified, crc);
+            } catch (IOException ex) {
+                Logger.getLogger(XMLSnapshot.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Controlla se uno snapshot corrisponde ancora al file XML da cui è stato
+     * creato: la dimensione deve coincidere e, se la data di modifica è
+     * cambiata, deve coincidere il CRC32 del contenuto.
+     *
+     * @param snapshot Il file snapshot.
+     * @param source Il file XML.
+     * @return {@code true} se lo snapshot può essere utilizzato al posto del
+     * file XML.
+     */
+    public static boolean isFresh(File snapshot, File source) {
+        return check(snapshot, source) != STALE;
+    }
+
+    /**
+     * Controlla la validità di uno snapshot.
+     *
+     * @return {@link #FRESH} se coincidono dimensione e data di modifica,
+     * {@link #FRESH_CONTENT} se è cambiata solo la data di modifica ma il
+     * contenuto è lo stesso, altrimenti {@link #STALE}.
+     */
+    private static int check(File snapshot, File source) {
+        if (!snapshot.isFile() || !source.isFile()) {
+            return STALE;
+        }
+        try (FileChannel fc = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (fc.read(header) < 0) {
+                    return STALE;
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return STALE;
+            }
+            long length = header.getLong();
+            long modified = header.getLong();
+            int crc = header.getInt();
+            if (length != source.length()) {
+                return STALE;
+            }
+            if (modified == source.lastModified()) {
+                return FRESH;
+            }
+            return crc == checksum(source) ? FRESH_CONTENT : STALE;
+        } catch (IOException ex) {
+            return STALE;
+        }
+    }
+
+    /**
+     * Aggiorna la data di modifica salvata nell'intestazione di uno snapshot
+     * il cui contenuto corrisponde ancora al file XML, così che i successivi
+     * caricamenti non debbano ricalcolare il CRC32 del file.
+     *
+     * @param snapshot Il file snapshot.
+     * @param modified La nuova data di modifica del file XML.
+     */
+    private static void updateModified(File snapshot, long modified) {
+        try (FileChannel fc = FileChannel.open(snapshot.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(Long.BYTES);
+            value.putLong(modified).flip();
+            while (value.hasRemaining()) {
+                fc.write(value, MODIFIED_OFFSET + value.position());
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(XMLSnapshot.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Salva lo snapshot di un documento. Il file viene prima scritto in un
+     * file temporaneo e poi sostituito, perciò un lettore non vede mai uno
+     * snapshot incompleto.
+     *
+     * @param document Il documento da salvare.
+     * @param snapshot Il file snapshot da creare.
+     * @param source Il file XML da cui è stato letto il documento, utilizzato
+     * per controllare la validità dello snapshot: dimensione, data di modifica
+     * e CRC32 vengono letti al momento della chiamata, perciò il file non deve
+     * essere stato modificato dopo la lettura del documento.
+     * @throws IOException Nel caso in cui non sia possibile scrivere il file.
+     */
+    public static void write(XMLDocument document, File snapshot, File source) throws IOException {
+        write(document, snapshot, source.length(), source.lastModified(), checksum(source));
+    }
+
+    private static void write(XMLDocument document, File snapshot, long length, long modified, int crc) throws IOException {
+        Path target = snapshot.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), snapshot.getName(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(temp)) {
+                write(document, os, length, modified, crc);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Legge un documento da uno snapshot, senza controllarne la validità.
+     *
+     * @param snapshot Il file snapshot.
+     * @param source Il file XML da associare al documento (può essere
+     * {@code null}).
+     * @return Il documento letto.
+     * @throws IOException Nel caso in cui il file non esiste o non è uno
+     * snapshot valido.
+     */
+    public static XMLDocument read(File snapshot, File source) throws IOException {
+        try (FileChannel fc = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            if (fc.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large: " + snapshot);
+            }
+            MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            return new SnapshotReader(buffer).readDocument(source);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IOException("Invalid snapshot: " + snapshot, ex);
+        }
+    }
+
+    private static int checksum(File source) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[XMLReader.DEFAULT_BUFFER_SIZE];
+        try (InputStream is = Files.newInputStream(source.toPath())) {
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void write(XMLDocument document, OutputStream os, long length, long modified, int crc) throws IOException {
+        HashMap<String, Integer> dictionary = new HashMap<>();
+        ArrayList<String> names = new ArrayList<>();
+        ArrayDeque<IXMLElement> to_visit = new ArrayDeque<>();
+        document.forEachElement(to_visit::push);
+        while (!to_visit.isEmpty()) {
+            IXMLElement element = to_visit.pop();
+            addName(dictionary, names, element.getName());
+            element.forEachTag(tag -> addName(dictionary, names, tag.getName()));
+            element.forEachElement(to_visit::push);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, XMLWriter.DEFAULT_BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(length);
+        out.writeLong(modified);
+        out.writeInt(crc);
+        writeVarInt(out, names.size());
+        for (String name : names) {
+            writeString(out, name);
+        }
+        writeComments(out, document.getComments());
+        writeVarInt(out, document.getElements().size());
+        ArrayDeque<Iterator<IXMLElement>> open_elements = new ArrayDeque<>();
+        open_elements.push(document.getElements().iterator());
+        while (!open_elements.isEmpty()) {
+            Iterator<IXMLElement> it = open_elements.peek();
+            if (!it.hasNext()) {
+                open_elements.pop();
+                continue;
+            }
+            IXMLElement element = it.next();
+            writeVarInt(out, dictionary.get(element.getName()));
+            writeString(out, element.getValue());
+            List<IXMLTag> tags = element.getTags();
+            writeVarInt(out, tags.size());
+            for (IXMLTag tag : tags) {
+                writeVarInt(out, dictionary.get(tag.getName()));
+                writeString(out, tag.getValue());
+            }
+            writeComments(out, element.getComments());
+            List<IXMLElement> sub_elements = element.getElements();
+            writeVarInt(out, sub_elements.size());
+            if (!sub_elements.isEmpty()) {
+                open_elements.push(sub_elements.iterator());
+            }
+        }
+        out.flush();
+    }
+
+    private static void addName(HashMap<String, Integer> dictionary, ArrayList<String> names, String name) {
+        if (!dictionary.containsKey(name)) {
+            dictionary.put(name, names.size());
+            names.add(name);
+        }
+    }
+
+    private static void writeComments(DataOutputStream out, List<IXMLComment> comments) throws IOException {
+        writeVarInt(out, comments.size());
+        for (IXMLComment comment : comments) {
+            writeString(out, comment.getValue());
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Scrive una stringa come lunghezza in byte + 1 (0 per {@code null})
+     * seguita dai byte UTF-8.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Legge lo snapshot dal buffer mappato.
+     */
+    private static final class SnapshotReader {
+
+        private final ByteBuffer buffer;
+        private byte[] scratch = new byte[256];
+        private String[] names;
+
+        private SnapshotReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private XMLDocument readDocument(File source) throws IOException {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Invalid snapshot header");
+            }
+            buffer.position(HEADER_SIZE);
+            names = new String[readVarInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = readString();
+            }
+            XMLDocument document = new XMLDocument(source);
+            readComments(document);
+            ArrayDeque<IXMLElement> parents = new ArrayDeque<>();
+            int[] remaining = new int[16];
+            int depth = 0;
+            parents.push(document);
+            remaining[0] = readVarInt();
+            while (depth >= 0) {
+                if (remaining[depth] == 0) {
+                    IXMLElement closed = parents.pop();
+                    if (depth > 0) {
+                        closed.close();
+                    }
+                    depth--;
+                    continue;
+                }
+                remaining[depth]--;
+                XMLElement element = new XMLElement(names[readVarInt()]);
+                element.setValue(readString());
+                for (int i = readVarInt(); i > 0; i--) {
+                    XMLTag tag = new XMLTag(names[readVarInt()]);
+                    tag.setValue(readString());
+                    element.addTag(tag);
+                }
+                readComments(element);
+                parents.peek().addSubElement(element);
+                int children = readVarInt();
+                if (children > 0) {
+                    depth++;
+                    if (depth == remaining.length) {
+                        remaining = Arrays.copyOf(remaining, depth * 2);
+                    }
+                    remaining[depth] = children;
+                    parents.push(element);
+                } else {
+                    element.close();
+                }
+            }
+            return document;
+        }
+
+        private void readComments(IXMLElement element) {
+            for (int i = readVarInt(); i > 0; i--) {
+                element.addComment(new XMLComment(readString()));
+            }
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private String readString() {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
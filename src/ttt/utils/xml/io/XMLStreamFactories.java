@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 TTT.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ttt.utils.xml.io;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+
+/**
+ * Contiene le istanze condivise di {@link XMLInputFactory} e
+ * {@link XMLOutputFactory} utilizzate da {@link XMLReader} e
+ * {@link XMLWriter}, evitando di cercare una nuova implementazione ad ogni
+ * lettura o scrittura.<br>
+ * Le factory vengono configurate una sola volta: ogni modifica delle
+ * proprietà crea delle nuove istanze, così che gli stream già aperti non
+ * vengano influenzati e le factory condivise non vengano mai modificate
+ * mentre sono in uso da altri thread.
+ *
+ * @author TTT
+ */
+public final class XMLStreamFactories {
+
+    private static boolean coalescing = false;
+    private static boolean namespace_aware = true;
+    private static boolean support_dtd = false;
+    private static volatile boolean interning = false;
+
+    private static volatile XMLInputFactory input_factory;
+    private static volatile XMLInputFactory fragment_factory;
+    private static volatile XMLOutputFactory output_factory;
+
+    private XMLStreamFactories() {
+    }
+
+    /**
+     * Ritorna la factory di lettura condivisa.
+     *
+     * @return La {@link XMLInputFactory} configurata.
+     */
+    public static XMLInputFactory getInputFactory() {
+        XMLInputFactory xmlif = input_factory;
+        if (xmlif == null) {
+            synchronized (XMLStreamFactories.class) {
+                xmlif = input_factory;
+                if (xmlif == null) {
+                    xmlif = createInputFactory();
+                    input_factory = xmlif;
+                }
+            }
+        }
+        return xmlif;
+    }
+
+    /**
+     * Ritorna la factory di scrittura condivisa.
+     *
+     * @return La {@link XMLOutputFactory}.
+     */
+    public static XMLOutputFactory getOutputFactory() {
+        XMLOutputFactory xmlof = output_factory;
+        if (xmlof == null) {
+            synchronized (XMLStreamFactories.class) {
+                xmlof = output_factory;
+                if (xmlof == null) {
+                    xmlof = XMLOutputFactory.newInstance();
+                    output_factory = xmlof;
+                }
+            }
+        }
+        return xmlof;
+    }
+
+    /**
+     * Ritorna la factory di lettura utilizzata per i frammenti di documento
+     * (ad esempio da {@link XMLLazyDocument}): ha le stesse impostazioni di
+     * {@link #getInputFactory()}, ma non gestisce i namespace, perché le
+     * dichiarazioni si possono trovare al di fuori del frammento.
+     *
+     * @return La {@link XMLInputFactory} per i frammenti.
+     */
+    static XMLInputFactory getFragmentInputFactory() {
+        XMLInputFactory xmlif = fragment_factory;
+        if (xmlif == null) {
+            synchronized (XMLStreamFactories.class) {
+                xmlif = fragment_factory;
+                if (xmlif == null) {
+                    xmlif = createInputFactory(false);
+                    fragment_factory = xmlif;
+                }
+            }
+        }
+        return xmlif;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        return createInputFactory(namespace_aware);
+    }
+
+    private static XMLInputFactory createInputFactory(boolean namespace_aware) {
+        XMLInputFactory xmlif = XMLInputFactory.newInstance();
+        xmlif.setProperty(XMLInputFactory.IS_COALESCING, coalescing);
+        xmlif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, namespace_aware);
+        xmlif.setProperty(XMLInputFactory.SUPPORT_DTD, support_dtd);
+        xmlif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, support_dtd);
+        return xmlif;
+    }
+
+    /**
+     * Se {@code true} il testo di un elemento (comprese le sezioni CDATA)
+     * viene unito in un unico evento. Di default è {@code false}.
+     *
+     * @param coalescing Il nuovo valore.
+     */
+    public static synchronized void setCoalescing(boolean coalescing) {
+        XMLStreamFactories.coalescing = coalescing;
+        input_factory = null;
+        fragment_factory = null;
+    }
+
+    /**
+     * Se {@code true} il parser gestisce i namespace. Di default è
+     * {@code true}.
+     *
+     * @param namespace_aware Il nuovo valore.
+     */
+    public static synchronized void setNamespaceAware(boolean namespace_aware) {
+        XMLStreamFactories.namespace_aware = namespace_aware;
+        input_factory = null;
+    }
+
+    /**
+     * Se {@code true} il parser elabora le DTD e le entità esterne. Di
+     * default è {@code false}.
+     *
+     * @param support_dtd Il nuovo valore.
+     */
+    public static synchronized void setSupportDTD(boolean support_dtd) {
+        XMLStreamFactories.support_dtd = support_dtd;
+        input_factory = null;
+        fragment_factory = null;
+    }
+
+    /**
+     * Se {@code true} i nomi di elementi e attributi letti da
+     * {@link XMLReader} vengono internati tramite {@link String#intern()}, in
+     * modo che i nomi ripetuti condividano la stessa istanza. Di default è
+     * {@code false}.
+     *
+     * @param interning Il nuovo valore.
+     */
+    public static void setInterning(boolean interning) {
+        XMLStreamFactories.interning = interning;
+    }
+
+    /**
+     * Ritorna se i nomi letti vengono internati.
+     *
+     * @return {@code true} se i nomi vengono internati.
+     */
+    public static boolean isInterning() {
+        return interning;
+    }
+}
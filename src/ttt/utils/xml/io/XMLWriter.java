@@ -15,16 +15,23 @@
  */
 package ttt.utils.xml.io;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import ttt.utils.xml.document.XMLDocument;
+import ttt.utils.xml.engine.XMLBindingContext;
 import ttt.utils.xml.engine.XMLWriteSupportEngine;
 import ttt.utils.xml.engine.interfaces.IXMLElement;
 
@@ -36,8 +43,26 @@ import ttt.utils.xml.engine.interfaces.IXMLElement;
  */
 public class XMLWriter {
 
+    /**
+     * Dimensione di default del buffer di scrittura.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
     private final File f;
+    private final OutputStream out;
+    private final Writer writer;
     private XMLWriteSupportEngine changer;
+    private XMLBindingContext binding_context;
+    private int buffer_size = DEFAULT_BUFFER_SIZE;
+    private int checkpoint_interval = 0;
+    private int written_elements = 0;
+
+    private XMLStreamWriter xmlsw;
+    private Flushable buffer;
+    private OutputStream owned;
+    private boolean hr;
+    private int open_elements = 0;
+    private XMLStreamException stream_error;
 
     /**
      * Crea un nuovo XMLWriter associato ad un file, in cui si potrà salvare un
@@ -49,22 +74,131 @@ public class XMLWriter {
      */
     public XMLWriter(File file) {
         this.f = file;
+        this.out = null;
+        this.writer = null;
+    }
+
+    /**
+     * Crea un nuovo XMLWriter che scrive il documento (codificato in UTF-8)
+     * sullo stream specificato. Lo stream non viene chiuso al termine della
+     * scrittura.
+     *
+     * @param out Lo stream su cui scrivere il documento.
+     */
+    public XMLWriter(OutputStream out) {
+        this.f = null;
+        this.out = out;
+        this.writer = null;
+    }
+
+    /**
+     * Crea un nuovo XMLWriter che scrive il documento sul {@link Writer}
+     * specificato, il quale si occupa della codifica dei caratteri. Il writer
+     * non viene chiuso al termine della scrittura.
+     *
+     * @param writer Il writer su cui scrivere il documento.
+     */
+    public XMLWriter(Writer writer) {
+        this.f = null;
+        this.out = null;
+        this.writer = writer;
+    }
+
+    /**
+     * Crea un nuovo XMLWriter che scrive il documento (codificato in UTF-8)
+     * sul canale specificato. Il canale non viene chiuso al termine della
+     * scrittura.
+     *
+     * @param channel Il canale su cui scrivere il documento.
+     */
+    public XMLWriter(WritableByteChannel channel) {
+        this(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Imposta la dimensione del buffer di scrittura: i dati vengono scritti
+     * sulla destinazione solo quando il buffer è pieno, ad un checkpoint o al
+     * termine del documento.
+     *
+     * @param buffer_size La dimensione del buffer.
+     */
+    public void setBufferSize(int buffer_size) {
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + buffer_size);
+        }
+        this.buffer_size = buffer_size;
+    }
+
+    /**
+     * Ritorna la dimensione del buffer di scrittura.
+     *
+     * @return La dimensione del buffer.
+     */
+    public int getBufferSize() {
+        return buffer_size;
+    }
+
+    /**
+     * Imposta ogni quanti elementi scritti eseguire il flush sulla
+     * destinazione. Con il valore {@code 0} (default) il flush viene eseguito
+     * solo al termine del documento.
+     *
+     * @param checkpoint_interval Il numero di elementi tra due flush.
+     */
+    public void setCheckpointInterval(int checkpoint_interval) {
+        if (checkpoint_interval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpoint_interval);
+        }
+        this.checkpoint_interval = checkpoint_interval;
+    }
+
+    /**
+     * Ritorna ogni quanti elementi viene eseguito il flush.
+     *
+     * @return Il numero di elementi tra due flush, {@code 0} se il flush viene
+     * eseguito solo al termine del documento.
+     */
+    public int getCheckpointInterval() {
+        return checkpoint_interval;
+    }
+
+    /**
+     * Imposta il contesto con le classi degli elementi utilizzato per
+     * applicare i cambiamenti e scegliere le tags da scrivere. Lo stesso
+     * contesto può essere condiviso da più writer, anche contemporaneamente.
+     *
+     * @param binding_context Il contesto oppure {@code null} per calcolare
+     * le informazioni delle classi al momento della scrittura.
+     */
+    public void setBindingContext(XMLBindingContext binding_context) {
+        this.binding_context = binding_context;
+    }
+
+    /**
+     * Ritorna il contesto con le classi degli elementi.
+     *
+     * @return Il contesto oppure {@code null} se non impostato.
+     */
+    public XMLBindingContext getBindingContext() {
+        return binding_context;
     }
 
     /*
      Prende in input un'istanza di tipo XMLDocument e iterando in successione
-     i suoi elementi e li scrive man mano eseguendo il flush continuo (ad ogni
-     elemento processato).
+     i suoi elementi e li scrive man mano in un buffer, eseguendo il flush
+     solo ai checkpoint e alla fine del documento.
 
     Deve permettere di creare un file vuoto nel caso non esiste, deve chiedere se
     si vuole sovrascrivere il file già esistente.
      */
     /**
-     * Scrive nel file (lo crea se non esiste già, altrimenti lo sovrascrive) il
-     * contenuto di un {@link XMLDocument}.<br>
+     * Scrive nella destinazione (nel caso di un file lo crea se non esiste
+     * già, altrimenti lo sovrascrive) il contenuto di un
+     * {@link XMLDocument}.<br>
      *
-     * Per ogni {@link IXMLElement} contenuto nel documento viene eseguito il
-     * flush subito dopo aver scritto l'apertura e i relativi tags.<br>
+     * Gli elementi vengono scritti in un buffer: il flush viene eseguito
+     * solamente ai checkpoint (vedi {@link #setCheckpointInterval(int)}) e al
+     * termine del documento.<br>
      *
      * Il file è scritto in codifica UTF-8 con formato XML 1.0
      *
@@ -74,108 +208,320 @@ public class XMLWriter {
      */
     public void writeDocument(XMLDocument document, boolean hr) {
         try {
-            if(document == null){
+            if (document == null) {
                 throw new NullPointerException("The document is null");
-            }else if(f == null){
-                throw new NullPointerException("Output file is null");
             }
-            if (!f.exists()) {
-                f.createNewFile();
+            applyChanges(document);
+            startDocument(hr);
+            try {
+                document.forEachElement(el -> writeSubtree(el, ""));
+                endDocument();
+            } finally {
+                closeStream();
+            }
+        } catch (IOException e) {
+            Logger.getLogger(XMLWriter.class.getName()).log(Level.SEVERE, null, e);
+        }
+    }
+
+    /**
+     * Inizia la scrittura incrementale di un documento: apre la destinazione
+     * e scrive l'intestazione XML. Gli elementi possono poi essere aggiunti
+     * uno alla volta tramite {@link #startElement(IXMLElement)},
+     * {@link #writeElement(IXMLElement)} e {@link #endElement()}, senza dover
+     * mantenere in memoria l'intero documento. La scrittura deve essere
+     * terminata con {@link #endDocument()}.
+     *
+     * @param hr Nel caso il valore sia {@code true} allora il file viene
+     * stampato con formattazione Human Readable.
+     * @throws IOException Nel caso in cui non sia possibile aprire la
+     * destinazione o un documento sia già aperto.
+     */
+    public void startDocument(boolean hr) throws IOException {
+        if (xmlsw != null) {
+            throw new IOException("A document is already open");
+        } else if (f == null && out == null && writer == null) {
+            throw new NullPointerException("Output target is null");
+        }
+        this.hr = hr;
+        written_elements = 0;
+        open_elements = 0;
+        stream_error = null;
+        XMLOutputFactory xmlof = XMLStreamFactories.getOutputFactory();
+        try {
+            if (f != null) {
+                if (!f.exists()) {
+                    f.createNewFile();
+                }
+                owned = new BufferedOutputStream(new FileOutputStream(f), buffer_size);
+                buffer = owned;
+                xmlsw = xmlof.createXMLStreamWriter(owned, "UTF-8");
+            } else if (out != null) {
+                BufferedOutputStream bos = new BufferedOutputStream(out, buffer_size);
+                buffer = bos;
+                xmlsw = xmlof.createXMLStreamWriter(bos, "UTF-8");
+            } else {
+                BufferedWriter bw = new BufferedWriter(writer, buffer_size);
+                buffer = bw;
+                xmlsw = xmlof.createXMLStreamWriter(bw);
             }
-            changer = new XMLWriteSupportEngine(document);
-            changer.applyChanges();
-            XMLOutputFactory xmlof = XMLOutputFactory.newInstance();
-            XMLStreamWriter xmlsw = xmlof.createXMLStreamWriter(new FileOutputStream(f), "UTF-8");
             xmlsw.writeStartDocument("UTF-8", "1.0");
             if (hr) {
                 xmlsw.writeCharacters("\n");
-                document.getElements().forEach(el -> writeElementHR(xmlsw, el, ""));
-            } else {
-                document.getElements().forEach(el -> writeElement(xmlsw, el));
             }
-            xmlsw.writeEndDocument();
-            xmlsw.flush();
-            xmlsw.close();
-        } catch (FileNotFoundException | XMLStreamException e) {
-            Logger.getLogger(XMLWriter.class.getName()).log(Level.SEVERE, null, e);
-        } catch (IOException ex) {
-            Logger.getLogger(XMLWriter.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (XMLStreamException ex) {
+            closeStream();
+            throw new IOException(ex);
         }
     }
 
     /**
-     * Si occupa della scrittura di un singolo elemento con i relativi tags, nel
-     * caso l'elemento ne possieda a sua volta degli altri allora il metodo
-     * procede a scrivere pure loro prima di chiudere l'elemento corrente.
+     * Scrive l'apertura di un elemento con le relative tags (ed il valore se
+     * presente) lasciandolo aperto: gli elementi scritti successivamente
+     * saranno suoi sotto-elementi fino alla chiamata di {@link #endElement()}.
+     * I sotto-elementi già contenuti nell'elemento non vengono scritti.
+     *
+     * @param element L'elemento da aprire.
+     * @throws IOException Nel caso in cui non sia possibile scrivere
+     * l'elemento o non sia stato aperto un documento.
+     */
+    public void startElement(IXMLElement element) throws IOException {
+        checkOpen();
+        applyChanges(element);
+        try {
+            writeStart(element, indent(open_elements));
+            if (hr) {
+                xmlsw.writeCharacters("\n");
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+        open_elements++;
+    }
+
+    /**
+     * Scrive un elemento completo di tutti i suoi sotto-elementi all'interno
+     * dell'ultimo elemento aperto (oppure come elemento del documento). Prima
+     * della scrittura vengono applicati i cambiamenti dell'elemento tramite
+     * {@link XMLWriteSupportEngine}, come in
+     * {@link #writeDocument(XMLDocument, boolean)}.
      *
-     * @param xmlsw Lo stream di scrittura del file.
      * @param element L'elemento da scrivere.
+     * @throws IOException Nel caso in cui non sia possibile scrivere
+     * l'elemento o non sia stato aperto un documento.
      */
-    private void writeElement(XMLStreamWriter xmlsw, IXMLElement element) {
+    public void writeElement(IXMLElement element) throws IOException {
+        checkOpen();
+        applyChanges(element);
+        writeSubtree(element, indent(open_elements));
+        if (stream_error != null) {
+            XMLStreamException ex = stream_error;
+            stream_error = null;
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Chiude l'ultimo elemento aperto con {@link #startElement(IXMLElement)}.
+     *
+     * @throws IOException Nel caso in cui non ci siano elementi aperti.
+     */
+    public void endElement() throws IOException {
+        checkOpen();
+        if (open_elements == 0) {
+            throw new IOException("No open element");
+        }
+        open_elements--;
         try {
-            xmlsw.writeStartElement(element.getName());
-            element.getTags().forEach(tag -> {
-                if (changer.doWriteTag(element, tag)) {
-                    try {
-                        xmlsw.writeAttribute(tag.getName(), tag.getValue());
-                    } catch (XMLStreamException ex) {
-                        Logger.getLogger(XMLWriter.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                }
-            });
-            if (element.getValue() != null) {
-                xmlsw.writeCharacters(element.getValue());
+            if (hr) {
+                xmlsw.writeCharacters(indent(open_elements));
             }
+            xmlsw.writeEndElement();
+            if (hr) {
+                xmlsw.writeCharacters("\n");
+            }
+            checkpoint();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Esegue il flush di tutto ciò che è stato scritto fino ad ora sulla
+     * destinazione (checkpoint esplicito).
+     *
+     * @throws IOException Nel caso in cui non sia possibile eseguire il flush.
+     */
+    public void flush() throws IOException {
+        checkOpen();
+        try {
             xmlsw.flush();
-            if (XMLWriteSupportEngine.doWriteSubElements(element)) {
-                element.getElements().forEach(el -> writeElement(xmlsw, el));
+            buffer.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Termina la scrittura del documento: chiude gli elementi ancora aperti,
+     * esegue il flush e chiude la destinazione se aperta da questo writer.
+     *
+     * @throws IOException Nel caso in cui non sia possibile terminare la
+     * scrittura.
+     */
+    public void endDocument() throws IOException {
+        checkOpen();
+        try {
+            while (open_elements > 0) {
+                endElement();
             }
-            xmlsw.writeEndElement();
+            xmlsw.writeEndDocument();
             xmlsw.flush();
+            buffer.flush();
         } catch (XMLStreamException ex) {
-            Logger.getLogger(XMLWriter.class.getName()).log(Level.SEVERE, null, ex);
+            throw new IOException(ex);
+        } finally {
+            closeStream();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (xmlsw == null) {
+            throw new IOException("No open document");
+        }
+    }
+
+    /**
+     * Chiude lo stream di scrittura e la destinazione se aperta da questo
+     * writer.
+     *
+     * @throws IOException Nel caso in cui non sia possibile chiudere la
+     * destinazione.
+     */
+    private void closeStream() throws IOException {
+        try {
+            if (xmlsw != null) {
+                xmlsw.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            xmlsw = null;
+            buffer = null;
+            if (owned != null) {
+                OutputStream to_close = owned;
+                owned = null;
+                to_close.close();
+            }
+        }
+    }
+
+    private String indent(int depth) {
+        if (!hr) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(depth);
+        for (int i = 0; i < depth; i++) {
+            sb.append('\t');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Conta un elemento scritto ed esegue il flush nel caso si sia raggiunto
+     * un checkpoint.
+     *
+     * @throws XMLStreamException Nel caso in cui non sia possibile eseguire il
+     * flush.
+     */
+    private void checkpoint() throws XMLStreamException {
+        written_elements++;
+        if (checkpoint_interval > 0 && written_elements % checkpoint_interval == 0) {
+            xmlsw.flush();
+            try {
+                buffer.flush();
+            } catch (IOException ex) {
+                throw new XMLStreamException(ex);
+            }
+        }
+    }
+
+    /**
+     * Scrive l'apertura di un elemento con le relative tags ed il valore se
+     * presente.
+     *
+     * @param element L'elemento da scrivere.
+     * @param tabs Le tabs da stampare prima dell'inserimento.
+     * @throws XMLStreamException Nel caso in cui non sia possibile scrivere.
+     */
+    private void writeStart(IXMLElement element, String tabs) throws XMLStreamException {
+        if (hr) {
+            xmlsw.writeCharacters(tabs);
+        }
+        xmlsw.writeStartElement(element.getName());
+        XMLStreamException[] attribute_error = new XMLStreamException[1];
+        element.forEachTag(tag -> {
+            if (attribute_error[0] == null && changer.doWriteTag(element, tag)) {
+                try {
+                    xmlsw.writeAttribute(tag.getName(), tag.getValue());
+                } catch (XMLStreamException ex) {
+                    attribute_error[0] = ex;
+                }
+            }
+        });
+        if (attribute_error[0] != null) {
+            throw attribute_error[0];
+        }
+        if (element.getValue() != null) {
+            xmlsw.writeCharacters(element.getValue());
         }
     }
 
     /**
-     * <b>HUMAN READABLE - STYLE</b><br>
+     * Applica i cambiamenti di un elemento (e dei suoi sotto-elementi) prima
+     * della scrittura.
+     *
+     * @param element L'elemento da scrivere.
+     */
+    private void applyChanges(IXMLElement element) {
+        changer = binding_context != null ? new XMLWriteSupportEngine(element, binding_context) : new XMLWriteSupportEngine(element);
+        changer.applyChanges();
+    }
+
+    /**
      * Si occupa della scrittura di un singolo elemento con i relativi tags, nel
      * caso l'elemento ne possieda a sua volta degli altri allora il metodo
-     * procede a scrivere pure loro prima di chiudere l'elemento corrente.
+     * procede a scrivere pure loro prima di chiudere l'elemento corrente.<br>
+     * Nel caso sia abilitata la formattazione <b>HUMAN READABLE</b> ogni
+     * elemento viene scritto su una nuova riga preceduto dalle tabs
+     * specificate.
      *
-     * @param xmlsw Lo stream di scrittura del file.
      * @param element L'elemento da scrivere.
      * @param tabs Le tabs da stampare prima dell'inserimento.
      */
-    private void writeElementHR(XMLStreamWriter xmlsw, IXMLElement element, String tabs) {
+    private void writeSubtree(IXMLElement element, String tabs) {
         try {
-            xmlsw.writeCharacters(tabs);
-            xmlsw.writeStartElement(element.getName());
-            element.getTags().forEach(tag -> {
-                if (changer.doWriteTag(element, tag)) {
-                    try {
-                        xmlsw.writeAttribute(tag.getName(), tag.getValue());
-                    } catch (XMLStreamException ex) {
-                        Logger.getLogger(XMLWriter.class.getName()).log(Level.SEVERE, null, ex);
+            writeStart(element, tabs);
+            if (hr) {
+                if (element.hasSubElements()) {
+                    xmlsw.writeCharacters("\n");
+                    if (XMLWriteSupportEngine.doWriteSubElements(element)) {
+                        String sub_tabs = tabs + "\t";
+                        element.forEachElement(el -> writeSubtree(el, sub_tabs));
                     }
+                    xmlsw.writeCharacters(tabs);
                 }
-            });
-            if (element.getValue() != null) {
-                xmlsw.writeCharacters(element.getValue());
-            }
-            xmlsw.flush();
-            boolean bl = element.getElements().size() > 0;
-            if (bl) {
+                xmlsw.writeEndElement();
                 xmlsw.writeCharacters("\n");
+            } else {
                 if (XMLWriteSupportEngine.doWriteSubElements(element)) {
-                    element.getElements().forEach(el -> writeElementHR(xmlsw, el, tabs + "\t"));
+                    element.forEachElement(el -> writeSubtree(el, tabs));
                 }
-                xmlsw.writeCharacters(tabs);
+                xmlsw.writeEndElement();
             }
-            xmlsw.writeEndElement();
-            xmlsw.writeCharacters("\n");
-            xmlsw.flush();
+            checkpoint();
         } catch (XMLStreamException ex) {
+            stream_error = ex;
             Logger.getLogger(XMLWriter.class.getName()).log(Level.SEVERE, null, ex);
         }
     }